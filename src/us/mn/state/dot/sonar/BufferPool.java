@@ -0,0 +1,109 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A buffer pool is a shared set of byte buffers of one size.  Buffers are
+ * borrowed while they contain data, and returned when drained, so idle
+ * connections don't hold any.
+ */
+class BufferPool {
+
+	/** Capacity of pooled buffers */
+	private final int buf_size;
+
+	/** Flag for direct (or heap) buffers */
+	private final boolean direct;
+
+	/** Maximum number of idle buffers to keep */
+	private volatile int max_idle;
+
+	/** Queue of idle buffers */
+	private final ConcurrentLinkedQueue<ByteBuffer> idle =
+		new ConcurrentLinkedQueue<ByteBuffer>();
+
+	/** Count of idle buffers */
+	private final AtomicInteger n_idle = new AtomicInteger();
+
+	/** Create a new buffer pool.
+	 * @param bs Capacity of buffers.
+	 * @param mi Maximum number of idle buffers to keep.
+	 * @param d Flag for direct buffers (false for heap buffers). */
+	public BufferPool(int bs, int mi, boolean d) {
+		buf_size = bs;
+		max_idle = mi;
+		direct = d;
+	}
+
+	/** Create a new pool of direct buffers.
+	 * @param bs Capacity of buffers.
+	 * @param mi Maximum number of idle buffers to keep. */
+	public BufferPool(int bs, int mi) {
+		this(bs, mi, true);
+	}
+
+	/** Get the capacity of pooled buffers */
+	public int getBufferSize() {
+		return buf_size;
+	}
+
+	/** Set the maximum number of idle buffers to keep */
+	public void setMaxIdle(int mi) {
+		max_idle = mi;
+	}
+
+	/** Take a buffer from the pool.
+	 * @param n Minimum capacity needed.
+	 * @return A cleared buffer. */
+	public ByteBuffer take(int n) {
+		if (n > buf_size)
+			return ByteBuffer.allocate(n);
+		ByteBuffer b = idle.poll();
+		if (b != null) {
+			n_idle.decrementAndGet();
+			b.clear();
+			return b;
+		} else if (direct)
+			return ByteBuffer.allocateDirect(buf_size);
+		else
+			return ByteBuffer.allocate(buf_size);
+	}
+
+	/** Take a full-size buffer from the pool */
+	public ByteBuffer take() {
+		return take(buf_size);
+	}
+
+	/** Give a buffer back to the pool.  The buffer must not be used by
+	 * the caller afterwards.  Oversized buffers are not kept.
+	 * @param b Buffer which was taken from the pool. */
+	public void give(ByteBuffer b) {
+		if (b.isDirect() == direct && b.capacity() == buf_size) {
+			if (n_idle.incrementAndGet() <= max_idle)
+				idle.add(b);
+			else
+				n_idle.decrementAndGet();
+		}
+	}
+
+	/** Get the number of idle buffers */
+	public int getIdle() {
+		return n_idle.get();
+	}
+}
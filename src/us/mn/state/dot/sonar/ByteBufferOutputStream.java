@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2010-2017  Minnesota Department of Transportation
+ * Copyright (C) 2010-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -19,7 +19,8 @@ import java.nio.ByteBuffer;
 
 /**
  * This is an output stream backed by a byte buffer.  It automatically expands
- * as necessary.
+ * as necessary.  With a buffer pool, the buffer is only borrowed while it
+ * contains data.
  *
  * @author Douglas Lau
  */
@@ -40,6 +41,9 @@ public class ByteBufferOutputStream extends OutputStream {
 	/** Default byte buffer (before expansion) */
 	private final ByteBuffer o_buffer;
 
+	/** Pool to borrow buffers (null for none) */
+	private final BufferPool pool;
+
 	/** Byte buffer where data is written */
 	private ByteBuffer buffer;
 
@@ -52,6 +56,15 @@ public class ByteBufferOutputStream extends OutputStream {
 	public ByteBufferOutputStream(int n_bytes) {
 		o_buffer = allocate(n_bytes);
 		buffer = o_buffer;
+		pool = null;
+	}
+
+	/** Create a new byte buffer output stream using a buffer pool.
+	 * @param p Pool of heap buffers. */
+	ByteBufferOutputStream(BufferPool p) {
+		o_buffer = ByteBuffer.allocate(0);
+		buffer = o_buffer;
+		pool = p;
 	}
 
 	/** Get the current byte buffer */
@@ -77,19 +90,40 @@ public class ByteBufferOutputStream extends OutputStream {
 		buffer.put(b, off, len);
 	}
 
+	/** Reserve space in the buffer for writing directly.
+	 * @param n_bytes Number of bytes to reserve.
+	 * @return Byte buffer with at least n_bytes remaining. */
+	public ByteBuffer reserve(int n_bytes) {
+		if (buffer.remaining() < n_bytes)
+			expand(n_bytes);
+		return buffer;
+	}
+
 	/** Expand the buffer by the specified number of bytes */
 	private void expand(int n_bytes) {
-		ByteBuffer buf = allocate(buffer.position() + n_bytes);
+		int n = buffer.position() + n_bytes;
+		ByteBuffer buf = (pool != null && n <= pool.getBufferSize())
+		               ? pool.take()
+		               : allocate(n);
 		buffer.flip();
 		buf.put(buffer);
+		release();
 		buffer = buf;
 	}
 
-	/** Compact the buffer */
+	/** Release the current buffer back to the pool */
+	private void release() {
+		if (pool != null && buffer != o_buffer)
+			pool.give(buffer);
+	}
+
+	/** Compact the buffer.  If it is empty, the default buffer is
+	 * restored, and any borrowed buffer is returned to the pool. */
 	public void compact() {
 		if (buffer.hasRemaining())
 			buffer.compact();
 		else {
+			release();
 			buffer = o_buffer;
 			o_buffer.clear();
 		}
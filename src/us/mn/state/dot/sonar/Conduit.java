@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -28,7 +28,7 @@ abstract public class Conduit {
 	abstract public String getName();
 
 	/** Flag to indicate that the conduit is connected */
-	protected boolean connected = false;
+	protected volatile boolean connected = false;
 
 	/** Test if the conduit is connected */
 	public boolean isConnected() {
@@ -49,6 +49,10 @@ abstract public class Conduit {
 	/** Disable writing data to the conduit */
 	abstract protected void disableWrite();
 
+	/** Resume handshaking after delegated SSL tasks complete.  This is
+	 * only called when tasks are run by an executor. */
+	protected void resumeHandshake() { }
+
 	/** Handle a LOGIN message */
 	public void doLogin(List<String> p) throws SonarException {
 		throw ProtocolError.invalidMessageCode();
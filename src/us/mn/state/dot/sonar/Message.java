@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -102,6 +102,34 @@ public enum Message {
 		c.doShow(p);
 	}};
 
+	/** Size of message dispatch tables (codes are ASCII) */
+	static private final int TABLE_SIZE = 128;
+
+	/** Create a dispatch table for a set of messages.
+	 * @param ms Valid messages.
+	 * @return Table of messages indexed by code. */
+	static public Message[] dispatchTable(Message... ms) {
+		Message[] t = new Message[TABLE_SIZE];
+		for (Message m: ms)
+			t[m.code] = m;
+		return t;
+	}
+
+	/** Lookup a message in a dispatch table.
+	 * @param t Dispatch table (from dispatchTable).
+	 * @param code Message code.
+	 * @return Message for the code.
+	 * @throws ProtocolError If code is not valid for the table. */
+	static public Message lookup(Message[] t, char code)
+		throws ProtocolError
+	{
+		Message m = (code < t.length) ? t[code] : null;
+		if (m != null)
+			return m;
+		else
+			throw ProtocolError.invalidMessageCode();
+	}
+
 	/** Message code */
 	public final char code;
 
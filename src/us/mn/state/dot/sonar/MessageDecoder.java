@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,16 +14,18 @@
  */
 package us.mn.state.dot.sonar;
 
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * A message decoder provides a Java API for decoding messages from the SONAR
- * wire protocol.
+ * wire protocol.  Separators are single bytes in UTF-8, so messages are
+ * split by scanning bytes, and only parameters are decoded to strings.
+ * Binary protocol frames are length-prefixed, so no scanning is needed.
  *
  * @author Douglas Lau
  */
@@ -32,70 +34,455 @@ public class MessageDecoder {
 	/** Everything on the wire is encoded to UTF-8 */
 	static private final Charset UTF8 = Charset.forName("UTF-8");
 
-	/** Byte buffer to store incoming SONAR data */
+	/** Record separator byte */
+	static private final byte RECORD_SEP = (byte) Message.RECORD_SEP.code;
+
+	/** Unit separator byte */
+	static private final byte UNIT_SEP = (byte) Message.UNIT_SEP.code;
+
+	/** Code strings for single-byte message codes.  These are shared so
+	 * that decoding a message code does not allocate. */
+	static private final String[] CODES = new String[128];
+	static {
+		for (int i = 0; i < CODES.length; i++)
+			CODES[i] = String.valueOf((char) i);
+	}
+
+	/** Get the code string for a message code byte */
+	static private String codeString(byte b) {
+		return (b >= 0) ? CODES[b] : String.valueOf((char) (b & 0xFF));
+	}
+
+	/** Empty buffer (while no bytes are waiting to be decoded) */
+	static private final byte[] EMPTY = new byte[0];
+
+	/** Byte buffer to store incoming SONAR data (null if bytes are
+	 * passed to receive) */
 	private final ByteBuffer app_in;
 
-	/** Byte buffer input stream */
-	private final ByteBufferInputStream in_buf;
+	/** Pool to borrow scratch buffers (null for none) */
+	private final BufferPool pool;
+
+	/** Scratch buffer borrowed from the pool (null if none) */
+	private ByteBuffer scratch;
+
+	/** Buffer of received bytes not yet decoded */
+	private byte[] buf;
+
+	/** Position of first byte of current message in buffer */
+	private int start = 0;
 
-	/** Char reader input stream */
-	private InputStreamReader reader;
+	/** Position of next byte to scan for separator */
+	private int scan = 0;
 
-	/** String builder to build decoded parameters */
-	private final StringBuilder m_buf = new StringBuilder();
+	/** Position after last received byte in buffer */
+	private int end = 0;
 
-	/** List of decoded parameters */
-	private ArrayList<String> params = new ArrayList<String>();
+	/** List of decoded parameters (reused for each message) */
+	private final ArrayList<String> params = new ArrayList<String>();
+
+	/** Protocol version */
+	private int version = MessageEncoder.PROTOCOL_TEXT;
+
+	/** Position after last varint decoded */
+	private int varpos;
+
+	/** Name parts received with the binary protocol, indexed by ID */
+	private String[] names = new String[64];
+
+	/** Parts of the name in the current message */
+	private final String[] name_parts =
+		new String[MessageEncoder.NAME_PARTS];
+
+	/** Number of parts of the name in the current message (0 if the
+	 * name was not sent using the dictionary) */
+	private int n_parts;
+
+	/** Message code of the current message (NULL_REF if invalid) */
+	private char code;
+
+	/** Scratch buffer for formatting integers */
+	private final byte[] digits = new byte[20];
 
 	/** Create a new SONAR message decoder */
 	public MessageDecoder(ByteBuffer in) throws IOException {
 		app_in = in;
-		in_buf = new ByteBufferInputStream(in);
-		reader = new InputStreamReader(in_buf, UTF8);
+		pool = null;
+		buf = new byte[Math.max(in.capacity(), 64)];
+	}
+
+	/** Create a new SONAR message decoder which borrows a scratch
+	 * buffer from a pool while there are bytes to decode.  Bytes must
+	 * be passed to the receive method.
+	 * @param p Pool of heap buffers. */
+	MessageDecoder(BufferPool p) {
+		app_in = null;
+		pool = p;
+		buf = EMPTY;
 	}
 
-	/** Complete the current parameter */
-	private void completeParameter() {
-		params.add(m_buf.toString());
-		m_buf.setLength(0);
+	/** Set the protocol version.  All following messages are decoded
+	 * using the new version.
+	 * @param v Protocol version. */
+	public void setVersion(int v) {
+		version = v;
 	}
 
-	/** Decode messages */
+	/** Get the number of dictionary name parts in the current message.
+	 * @return Number of parts, or 0 if the name was not sent using the
+	 *         dictionary. */
+	public int getNameParts() {
+		return n_parts;
+	}
+
+	/** Get the message code of the current message.
+	 * @return Message code, or NULL_REF code if the first parameter is
+	 *         not a single ASCII character. */
+	public char getCode() {
+		return code;
+	}
+
+	/** Get one dictionary name part of the current message.
+	 * @param i Part index (type, object, attribute). */
+	public String getNamePart(int i) {
+		return name_parts[i];
+	}
+
+	/** Get the name of the current message.  A dictionary name with
+	 * more than one part is only joined when this is called.
+	 * @return Name parameter, or null if there is none. */
+	public String getName() {
+		if (n_parts > 1) {
+			StringBuilder sb = new StringBuilder(name_parts[0]);
+			for (int i = 1; i < n_parts; i++) {
+				sb.append('/');
+				sb.append(name_parts[i]);
+			}
+			return sb.toString();
+		} else
+			return (params.size() > 1) ? params.get(1) : null;
+	}
+
+	/** Decode one message.  The returned list is reused, so it is only
+	 * valid until the next call to decode.  A dictionary name with more
+	 * than one part is an empty string in the list; use getNamePart or
+	 * getName instead.
+	 * @return List of message parameters, or null if no complete message
+	 *         has been received. */
 	public List<String> decode() throws IOException {
-		try {
-			app_in.flip();
-			return _decode();
+		if (app_in != null) {
+			try {
+				app_in.flip();
+				receive(app_in);
+			}
+			finally {
+				app_in.compact();
+			}
 		}
-		finally {
-			app_in.compact();
+		List<String> p = (version == MessageEncoder.PROTOCOL_BINARY)
+		               ? decodeBinary()
+		               : _decode();
+		if (start == end)
+			release();
+		return p;
+	}
+
+	/** Move all remaining bytes from a buffer to be decoded.
+	 * @param in Buffer of received bytes (flipped). */
+	public void receive(ByteBuffer in) {
+		int n = in.remaining();
+		if (n > 0) {
+			reserve(n);
+			in.get(buf, end, n);
+			end += n;
 		}
 	}
 
-	/** Decode messages */
-	private List<String> _decode() throws IOException {
-		while (reader.ready()) {
-			int ch = reader.read();
-			if (ch < 0)
-				break;
-			char c = (char) ch;
-			if (Message.RECORD_SEP.code == c) {
-				completeParameter();
-				List<String> p = params;
-				params = new ArrayList<String>();
-				return p;
-			} else if (Message.UNIT_SEP.code == c)
-				completeParameter();
+	/** Reserve space in the buffer for more bytes */
+	private void reserve(int n) {
+		if (end + n > buf.length) {
+			int len = end - start;
+			if (len + n > buf.length)
+				grow(Math.max(len + n, buf.length * 2), len);
 			else
-				m_buf.append(c);
+				System.arraycopy(buf, start, buf, 0, len);
+			scan -= start;
+			start = 0;
+			end = len;
+		}
+	}
+
+	/** Move undecoded bytes to a larger buffer, borrowing from the pool
+	 * if possible.
+	 * @param n Capacity needed.
+	 * @param len Number of undecoded bytes. */
+	private void grow(int n, int len) {
+		ByteBuffer s = (pool != null && n <= pool.getBufferSize())
+		             ? pool.take()
+		             : null;
+		byte[] b = (s != null) ? s.array() : new byte[n];
+		System.arraycopy(buf, start, b, 0, len);
+		release();
+		scratch = s;
+		buf = b;
+	}
+
+	/** Release the buffer after all bytes are decoded.  Without a pool,
+	 * the buffer is kept for the next message. */
+	private void release() {
+		if (pool != null) {
+			if (scratch != null) {
+				pool.give(scratch);
+				scratch = null;
+			}
+			buf = EMPTY;
+		}
+	}
+
+	/** Decode one binary frame from the buffer */
+	private List<String> decodeBinary() throws IOException {
+		int pos = start;
+		int len = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (pos >= end)
+				return null;
+			if (shift > 28)
+				throw new IOException("Invalid frame length");
+			byte b = buf[pos++];
+			len |= (b & 0x7F) << shift;
+			if (b >= 0)
+				break;
+		}
+		if (len < 1)
+			throw new IOException("Invalid frame length");
+		if (end - pos < len)
+			return null;
+		decodeFrame(pos, pos + len);
+		start = pos + len;
+		scan = start;
+		if (start == end) {
+			start = 0;
+			scan = 0;
+			end = 0;
+		}
+		return params;
+	}
+
+	/** Decode parameters of a binary frame */
+	private void decodeFrame(int pos, int fe) throws IOException {
+		params.clear();
+		n_parts = 0;
+		byte b = buf[pos++];
+		code = (b >= 0) ? (char) b : Message.NULL_REF.code;
+		params.add(codeString(b));
+		while (pos < fe)
+			pos = decodeParam(pos, fe);
+	}
+
+	/** Decode one tagged parameter of a binary frame.
+	 * @return Position after parameter. */
+	private int decodeParam(int pos, int fe) throws IOException {
+		byte tag = buf[pos++];
+		switch (tag) {
+		case MessageEncoder.TAG_STRING:
+			long n = getVarlong(pos, fe);
+			pos = varpos;
+			if (n < 0 || n > fe - pos)
+				throw new IOException("Invalid string length");
+			params.add(decodeString(pos, pos + (int) n));
+			return pos + (int) n;
+		case MessageEncoder.TAG_INT:
+			long z = getVarlong(pos, fe);
+			params.add(intString((z >>> 1) ^ -(z & 1)));
+			return varpos;
+		case MessageEncoder.TAG_FLOAT:
+			checkLength(pos, fe, 4);
+			params.add(Float.toString(Float.intBitsToFloat(
+				(int) getFixed(pos, 4))));
+			return pos + 4;
+		case MessageEncoder.TAG_DOUBLE:
+			checkLength(pos, fe, 8);
+			params.add(Double.toString(Double.longBitsToDouble(
+				getFixed(pos, 8))));
+			return pos + 8;
+		case MessageEncoder.TAG_NULL:
+			params.add(MessageEncoder.NULL_STR);
+			return pos;
+		case MessageEncoder.TAG_FALSE:
+			params.add("false");
+			return pos;
+		case MessageEncoder.TAG_TRUE:
+			params.add("true");
+			return pos;
+		case MessageEncoder.TAG_NAME:
+			return decodeName(pos, fe);
+		default:
+			throw new IOException("Invalid parameter tag");
+		}
+	}
+
+	/** Decode a dictionary name parameter.
+	 * @return Position after name. */
+	private int decodeName(int pos, int fe) throws IOException {
+		checkLength(pos, fe, 1);
+		int n = buf[pos++];
+		if (n < 1 || n > MessageEncoder.NAME_PARTS)
+			throw new IOException("Invalid name");
+		for (int i = 0; i < n; i++)
+			pos = decodeNamePart(pos, fe, i);
+		n_parts = n;
+		params.add((n > 1) ? "" : name_parts[0]);
+		return pos;
+	}
+
+	/** Decode one part of a dictionary name.  ID 0 defines a part,
+	 * followed by its ID (0 if not kept) and the string.
+	 * @return Position after name part. */
+	private int decodeNamePart(int pos, int fe, int i) throws IOException {
+		int id = getNameId(pos, fe);
+		pos = varpos;
+		if (id > 0) {
+			if (id >= names.length || names[id] == null)
+				throw new IOException("Invalid name ID");
+			name_parts[i] = names[id];
+			return pos;
+		}
+		id = getNameId(pos, fe);
+		pos = varpos;
+		long len = getVarlong(pos, fe);
+		pos = varpos;
+		if (len < 0 || len > fe - pos)
+			throw new IOException("Invalid string length");
+		String part = decodeString(pos, pos + (int) len);
+		if (id > 0)
+			putName(id, part);
+		name_parts[i] = part;
+		return pos + (int) len;
+	}
+
+	/** Get a name part ID from the buffer, setting varpos */
+	private int getNameId(int pos, int fe) throws IOException {
+		long id = getVarlong(pos, fe);
+		if (id < 0 || id >= MessageEncoder.MAX_NAMES)
+			throw new IOException("Invalid name ID");
+		return (int) id;
+	}
+
+	/** Put a name part into the dictionary */
+	private void putName(int id, String part) {
+		if (id >= names.length) {
+			int n = names.length;
+			while (n <= id)
+				n *= 2;
+			names = Arrays.copyOf(names, n);
+		}
+		names[id] = part;
+	}
+
+	/** Get an unsigned varint from the buffer, setting varpos */
+	private long getVarlong(int pos, int fe) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (pos >= fe)
+				break;
+			byte b = buf[pos++];
+			v |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				varpos = pos;
+				return v;
+			}
 		}
+		throw new IOException("Invalid varint");
+	}
+
+	/** Format an integer as a string.  This is faster than
+	 * Long.toString for the small values which are common. */
+	private String intString(long v) {
+		int i = digits.length;
+		long u = (v < 0) ? -v : v;
+		do {
+			digits[--i] = (byte) ('0' + (u % 10));
+			u /= 10;
+		} while (u != 0);
+		if (v < 0)
+			digits[--i] = '-';
+		return new String(digits, i, digits.length - i, UTF8);
+	}
+
+	/** Check that a fixed-length value is within a frame */
+	private void checkLength(int pos, int fe, int n) throws IOException {
+		if (fe - pos < n)
+			throw new IOException("Invalid frame");
+	}
+
+	/** Get a big-endian fixed-length value from the buffer */
+	private long getFixed(int pos, int n_bytes) {
+		long v = 0;
+		for (int i = 0; i < n_bytes; i++)
+			v = (v << 8) | (buf[pos + i] & 0xFF);
+		return v;
+	}
+
+	/** Decode one message from the buffer */
+	private List<String> _decode() {
+		for (int i = scan; i < end; i++) {
+			if (buf[i] == RECORD_SEP) {
+				decodeParameters(i);
+				start = i + 1;
+				scan = start;
+				if (start == end) {
+					start = 0;
+					scan = 0;
+					end = 0;
+				}
+				return params;
+			}
+		}
+		scan = end;
 		return null;
 	}
 
+	/** Decode parameters of a message ending at a record separator */
+	private void decodeParameters(int rs) {
+		params.clear();
+		n_parts = 0;
+		code = Message.NULL_REF.code;
+		int s = start;
+		if (isCode(s, rs)) {
+			byte b = buf[s];
+			code = (char) b;
+			params.add(CODES[b]);
+			if (s + 1 == rs)
+				return;
+			s += 2;
+		}
+		for (int i = s; i < rs; i++) {
+			if (buf[i] == UNIT_SEP) {
+				params.add(decodeString(s, i));
+				s = i + 1;
+			}
+		}
+		params.add(decodeString(s, rs));
+	}
+
+	/** Check if a message starts with a single-byte code parameter */
+	private boolean isCode(int s, int rs) {
+		return (s < rs)
+		    && (buf[s] >= 0)
+		    && (buf[s] != UNIT_SEP)
+		    && (s + 1 == rs || buf[s + 1] == UNIT_SEP);
+	}
+
+	/** Decode a parameter string from a slice of the buffer */
+	private String decodeString(int s, int e) {
+		return (s < e) ? new String(buf, s, e - s, UTF8) : "";
+	}
+
 	/** Debug the SONAR parameters */
 	public void debugParameters() {
 		StringBuilder b = new StringBuilder();
-		for (String s: params) {
-			b.append(s);
+		for (int i = 0; i < params.size(); i++) {
+			b.append((i == 1) ? getName() : params.get(i));
 			b.append(' ');
 		}
 		System.err.println(b.toString());
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2013  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,37 +15,453 @@
 package us.mn.state.dot.sonar;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A message encoder provides a Java API for encoding messages to the SONAR
- * wire protocol.
+ * wire protocol.  Messages are encoded to UTF-8 directly into the output
+ * buffer, stripping message delimiters and terminators while copying.
+ *
+ * With the binary protocol, each message is a frame starting with its length
+ * (varint), followed by a message code byte.  Each parameter starts with a
+ * tag byte: strings are length-prefixed UTF-8, and numbers which can be
+ * restored to an identical string are sent as varints or raw IEEE floats.
+ *
+ * Names are split into type, object and attribute parts, and each part is
+ * put into a per-connection dictionary the first time it is sent.  After
+ * that, the part is sent as its dictionary ID.
  *
  * @author Douglas Lau
  */
 public class MessageEncoder {
 
-	/** Everything on the wire is encoded to UTF-8 */
-	static protected final Charset UTF8 = Charset.forName("UTF-8");
+	/** Text protocol version */
+	static public final int PROTOCOL_TEXT = 1;
+
+	/** Binary protocol version */
+	static public final int PROTOCOL_BINARY = 2;
+
+	/** Binary tag for a UTF-8 string parameter */
+	static final byte TAG_STRING = 0;
+
+	/** Binary tag for an integer (zigzag varint) parameter */
+	static final byte TAG_INT = 1;
+
+	/** Binary tag for a float (4 byte IEEE) parameter */
+	static final byte TAG_FLOAT = 2;
+
+	/** Binary tag for a double (8 byte IEEE) parameter */
+	static final byte TAG_DOUBLE = 3;
+
+	/** Binary tag for a null reference parameter */
+	static final byte TAG_NULL = 4;
+
+	/** Binary tag for a boolean false parameter */
+	static final byte TAG_FALSE = 5;
+
+	/** Binary tag for a boolean true parameter */
+	static final byte TAG_TRUE = 6;
+
+	/** Binary tag for a name parameter, using the name dictionary */
+	static final byte TAG_NAME = 7;
+
+	/** Maximum number of parts in a dictionary name */
+	static final int NAME_PARTS = 3;
+
+	/** Maximum name part ID (exclusive) */
+	static final int MAX_NAMES = 1 << 16;
+
+	/** Mapping of name parts to IDs, shared by all connections */
+	static private final ConcurrentHashMap<String, Integer> NAME_IDS =
+		new ConcurrentHashMap<String, Integer>();
+
+	/** Last name part ID assigned */
+	static private final AtomicInteger LAST_ID = new AtomicInteger();
+
+	/** Get the shared ID of a name part.
+	 * @return Name part ID, or 0 if all IDs have been assigned. */
+	static int namePartId(String part) {
+		Integer id = NAME_IDS.get(part);
+		if (id != null)
+			return id;
+		if (LAST_ID.get() >= MAX_NAMES - 1)
+			return 0;
+		int n = LAST_ID.incrementAndGet();
+		if (n >= MAX_NAMES)
+			return 0;
+		id = NAME_IDS.putIfAbsent(part, n);
+		return (id != null) ? id : n;
+	}
+
+	/** Null reference string */
+	static final String NULL_STR = String.valueOf(Message.NULL_REF.code);
+
+	/** Maximum size of a varint (32-bit) */
+	static private final int VARINT_MAX = 5;
+
+	/** Unit separator character */
+	static private final char UNIT_SEP = Message.UNIT_SEP.code;
+
+	/** Record separator character */
+	static private final char RECORD_SEP = Message.RECORD_SEP.code;
+
+	/** Get the encoded length of a string in UTF-8 */
+	static private int utf8Length(String s) {
+		int len = s.length();
+		int n = len;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				if (c < 0x800)
+					n += 1;
+				else if (isSurrogatePair(s, i)) {
+					n += 2;
+					i++;
+				} else if (!Character.isSurrogate(c))
+					n += 2;
+			}
+		}
+		return n;
+	}
+
+	/** Check for a valid surrogate pair at an index of a string */
+	static private boolean isSurrogatePair(String s, int i) {
+		return Character.isHighSurrogate(s.charAt(i))
+		    && (i + 1 < s.length())
+		    && Character.isLowSurrogate(s.charAt(i + 1));
+	}
+
+	/** Get the encoded length of a message */
+	static private int encodedLength(Message m, String name,
+		String[] params)
+	{
+		int n = 2;
+		if (name != null) {
+			n += 1 + utf8Length(name);
+			if (params != null) {
+				for (String p: params)
+					n += 1 + utf8Length(p);
+			}
+		}
+		return n;
+	}
+
+	/** Put one message into a byte array.
+	 * @param b Byte array with enough space for encoded message.
+	 * @param pos Position to put message.
+	 * @return Position after encoded message. */
+	static private int putMessage(byte[] b, int pos, Message m,
+		String name, String[] params)
+	{
+		b[pos++] = (byte) m.code;
+		if (name != null) {
+			b[pos++] = (byte) UNIT_SEP;
+			pos = putString(b, pos, name);
+			if (params != null) {
+				for (String p: params) {
+					b[pos++] = (byte) UNIT_SEP;
+					pos = putString(b, pos, p);
+				}
+			}
+		}
+		b[pos++] = (byte) RECORD_SEP;
+		return pos;
+	}
+
+	/** Put a string into a byte array, encoded to UTF-8.  Message
+	 * delimiters and terminators are replaced with spaces, and unpaired
+	 * surrogates are replaced with question marks.
+	 * @return Position after encoded string. */
+	static private int putString(byte[] b, int pos, String s) {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (c == UNIT_SEP || c == RECORD_SEP)
+					c = ' ';
+				b[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				b[pos++] = (byte) (0xC0 | (c >> 6));
+				b[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (isSurrogatePair(s, i)) {
+				int cp = Character.toCodePoint(c,
+					s.charAt(++i));
+				b[pos++] = (byte) (0xF0 | (cp >> 18));
+				b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				b[pos++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c))
+				b[pos++] = (byte) '?';
+			else {
+				b[pos++] = (byte) (0xE0 | (c >> 12));
+				b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return pos;
+	}
+
+	/** Get the maximum length of a binary message */
+	static private int binaryMaxLength(String name, String[] params) {
+		int n = VARINT_MAX + 1;
+		if (name != null) {
+			n += nameMaxLength(name);
+			n += paramsMaxLength(params);
+		}
+		return n;
+	}
+
+	/** Get the maximum length of a binary name */
+	static private int nameMaxLength(String name) {
+		return 2 + NAME_PARTS * 3 * VARINT_MAX + 3 * name.length();
+	}
+
+	/** Get the maximum length of binary parameters */
+	static private int paramsMaxLength(String[] params) {
+		int n = 0;
+		if (params != null) {
+			for (String p: params)
+				n += 1 + VARINT_MAX + 3 * p.length();
+		}
+		return n;
+	}
+
+	/** Put one binary message into a byte array.
+	 * @param b Byte array with enough space for encoded message.
+	 * @param pos Position to put message.
+	 * @param sent Name part IDs sent on the connection (null to send
+	 *             names as strings).
+	 * @return Position after encoded message. */
+	static private int putBinary(byte[] b, int pos, Message m,
+		String name, String[] params, BitSet sent)
+	{
+		// Body is put after room for the largest length prefix
+		int body = pos + VARINT_MAX;
+		int end = body;
+		b[end++] = (byte) m.code;
+		if (name != null) {
+			end = putName(b, end, m, name, sent);
+			end = putParams(b, end, params);
+		}
+		return putFrameLength(b, pos, body, end);
+	}
+
+	/** Put the length prefix of a frame, moving the body after it.
+	 * @param pos Position of frame.
+	 * @param body Position of frame body.
+	 * @param end Position after frame body.
+	 * @return Position after frame. */
+	static private int putFrameLength(byte[] b, int pos, int body,
+		int end)
+	{
+		int len = end - body;
+		int hd = putVarint(b, pos, len);
+		System.arraycopy(b, body, b, hd, len);
+		return hd + len;
+	}
+
+	/** Put binary parameters into a byte array.
+	 * @return Position after parameters. */
+	static private int putParams(byte[] b, int pos, String[] params) {
+		if (params != null) {
+			for (String p: params)
+				pos = putParam(b, pos, p);
+		}
+		return pos;
+	}
+
+	/** Put a binary name into a byte array.
+	 * @return Position after name. */
+	static private int putName(byte[] b, int pos, Message m, String name,
+		BitSet sent)
+	{
+		if (sent != null && isNameMessage(m) &&
+		    countParts(name) <= NAME_PARTS)
+		{
+			b[pos++] = TAG_NAME;
+			b[pos++] = (byte) countParts(name);
+			int s = 0;
+			int e = name.indexOf('/');
+			while (e >= 0) {
+				pos = putNamePart(b, pos, name.substring(s, e),
+					sent);
+				s = e + 1;
+				e = name.indexOf('/', s);
+			}
+			return putNamePart(b, pos, name.substring(s), sent);
+		} else
+			return putParam(b, pos, name);
+	}
+
+	/** Check if the name of a message should use the dictionary */
+	static private boolean isNameMessage(Message m) {
+		switch (m) {
+		case ATTRIBUTE:
+		case OBJECT:
+		case REMOVE:
+		case TYPE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/** Count the parts of a name */
+	static private int countParts(String name) {
+		int n = 1;
+		for (int i = name.indexOf('/'); i >= 0;
+		     i = name.indexOf('/', i + 1))
+			n++;
+		return n;
+	}
+
+	/** Put one part of a name into a byte array.  A part which has not
+	 * been sent on the connection is defined by 0, followed by its ID
+	 * and the string.  After that, only the ID is sent.
+	 * @return Position after name part. */
+	static private int putNamePart(byte[] b, int pos, String part,
+		BitSet sent)
+	{
+		int id = namePartId(part);
+		if (id > 0 && sent.get(id))
+			return putVarint(b, pos, id);
+		b[pos++] = 0;
+		pos = putVarint(b, pos, id);
+		pos = putVarint(b, pos, utf8Length(part));
+		pos = putString(b, pos, part);
+		if (id > 0)
+			sent.set(id);
+		return pos;
+	}
+
+	/** Put an unsigned varint into a byte array.
+	 * @return Position after varint. */
+	static private int putVarint(byte[] b, int pos, int v) {
+		while ((v & ~0x7F) != 0) {
+			b[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		b[pos++] = (byte) v;
+		return pos;
+	}
+
+	/** Put an unsigned long varint into a byte array.
+	 * @return Position after varint. */
+	static private int putVarlong(byte[] b, int pos, long v) {
+		while ((v & ~0x7FL) != 0) {
+			b[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		b[pos++] = (byte) v;
+		return pos;
+	}
+
+	/** Put a big-endian value into a byte array.
+	 * @param n_bytes Number of bytes to put.
+	 * @return Position after value. */
+	static private int putFixed(byte[] b, int pos, long v, int n_bytes) {
+		for (int i = n_bytes - 1; i >= 0; i--)
+			b[pos++] = (byte) (v >>> (i * 8));
+		return pos;
+	}
+
+	/** Put one tagged binary parameter into a byte array.  Typed
+	 * values are put by the putParam instance methods, so a string is
+	 * always sent as a string (or null reference).
+	 * @return Position after parameter. */
+	static private int putParam(byte[] b, int pos, String s) {
+		if (NULL_STR.equals(s)) {
+			b[pos++] = TAG_NULL;
+			return pos;
+		}
+		b[pos++] = TAG_STRING;
+		pos = putVarint(b, pos, utf8Length(s));
+		return putString(b, pos, s);
+	}
 
-	/** Strip message delimiters and terminators from a string */
-	static protected String stripString(String s) {
-		s = s.replace(Message.UNIT_SEP.code, ' ');
-		return s.replace(Message.RECORD_SEP.code, ' ');
+	/** Put an integer formatted as a decimal string into a byte array.
+	 * @return Position after digits. */
+	static private int putDecimal(byte[] b, int pos, long v) {
+		// Digits are computed from a negative value, so that
+		// Long.MIN_VALUE works
+		if (v < 0)
+			b[pos++] = '-';
+		else
+			v = -v;
+		int n = 1;
+		for (long t = v; t <= -10; t /= 10)
+			n++;
+		for (int i = pos + n - 1; i >= pos; i--) {
+			b[i] = (byte) ('0' - (v % 10));
+			v /= 10;
+		}
+		return pos + n;
+	}
+
+	/** Encode one message into a byte array.  The array can then be
+	 * appended to any number of encoders, so a message which is sent to
+	 * many connections only needs to be encoded once. */
+	static public byte[] encodeBytes(Message m, String name,
+		String[] params)
+	{
+		byte[] b = new byte[encodedLength(m, name, params)];
+		putMessage(b, 0, m, name, params);
+		return b;
+	}
+
+	/** Encode one message into a byte array for a protocol version.
+	 * @param v Protocol version.
+	 * @see #encodeBytes(Message, String, String[]) */
+	static public byte[] encodeBytes(int v, Message m, String name,
+		String[] params)
+	{
+		if (v == PROTOCOL_BINARY) {
+			byte[] b = new byte[binaryMaxLength(name, params)];
+			int end = putBinary(b, 0, m, name, params, null);
+			return Arrays.copyOf(b, end);
+		} else
+			return encodeBytes(m, name, params);
+	}
+
+	/** Encode a message to be shared by many connections.  With the
+	 * binary protocol, only the parameters are encoded, since the name
+	 * depends on each connection's dictionary.
+	 * @param v Protocol version.
+	 * @return Shared encoding, for encodeShared. */
+	static public byte[] encodeShared(int v, Message m, String name,
+		String[] params)
+	{
+		if (v == PROTOCOL_BINARY) {
+			byte[] b = new byte[paramsMaxLength(params)];
+			int end = putParams(b, 0, params);
+			return Arrays.copyOf(b, end);
+		} else
+			return encodeBytes(m, name, params);
 	}
 
 	/** Byte buffer output stream */
 	protected final ByteBufferOutputStream out_buf;
 
-	/** Char writer output stream */
-	protected final OutputStreamWriter writer;
+	/** Protocol version */
+	private int version = PROTOCOL_TEXT;
+
+	/** Set of name part IDs sent with the binary protocol */
+	private final BitSet sent = new BitSet();
 
 	/** Create a new SONAR message encoder */
 	public MessageEncoder(int n_bytes) throws IOException {
 		out_buf = new ByteBufferOutputStream(n_bytes);
-		writer = new OutputStreamWriter(out_buf, UTF8);
+	}
+
+	/** Create a new SONAR message encoder which borrows its output
+	 * buffer from a pool while there is encoded data.
+	 * @param pool Pool of heap buffers. */
+	MessageEncoder(BufferPool pool) {
+		out_buf = new ByteBufferOutputStream(pool);
 	}
 
 	/** Encode one message with the given code.
@@ -65,30 +481,226 @@ public class MessageEncoder {
 	public void encode(Message m, String name, String[] params)
 		throws IOException
 	{
-		writer.write(m.code);
-		if(name != null) {
-			writer.write(Message.UNIT_SEP.code);
-			writer.write(name);
-			if(params != null) {
-				for(String p: params) {
-					writer.write(Message.UNIT_SEP.code);
-					writer.write(stripString(p));
-				}
-			}
+		if (version == PROTOCOL_BINARY) {
+			encodeBinary(m, name, params);
+			return;
 		}
-		writer.write(Message.RECORD_SEP.code);
+		int n = encodedLength(m, name, params);
+		ByteBuffer buf = out_buf.reserve(n);
+		int pos = buf.position();
+		int end = putMessage(buf.array(), buf.arrayOffset() + pos, m,
+			name, params) - buf.arrayOffset();
+		assert end == pos + n;
+		buf.position(end);
+	}
+
+	/** Encode one binary message */
+	private void encodeBinary(Message m, String name, String[] params)
+		throws IOException
+	{
+		int n = binaryMaxLength(name, params);
+		ByteBuffer buf = out_buf.reserve(n);
+		int off = buf.arrayOffset();
+		int end = putBinary(buf.array(), off + buf.position(), m,
+			name, params, sent);
+		buf.position(end - off);
 	}
 
-	/** Flush the encoded data */
-	public void flush() throws IOException {
-		writer.flush();
+	/** Encode one message which was encoded by encodeShared.
+	 * This may only be called on the Task Processor thread.
+	 * @param m Message code.
+	 * @param name Message name.
+	 * @param shared Shared encoding; must not be modified. */
+	public void encodeShared(Message m, String name, byte[] shared)
+		throws IOException
+	{
+		if (version == PROTOCOL_BINARY) {
+			int n = VARINT_MAX + 1 + nameMaxLength(name) +
+				shared.length;
+			ByteBuffer buf = out_buf.reserve(n);
+			byte[] b = buf.array();
+			int pos = buf.arrayOffset() + buf.position();
+			int body = pos + VARINT_MAX;
+			int end = body;
+			b[end++] = (byte) m.code;
+			end = putName(b, end, m, name, sent);
+			System.arraycopy(shared, 0, b, end, shared.length);
+			end = putFrameLength(b, pos, body,
+				end + shared.length);
+			buf.position(end - buf.arrayOffset());
+		} else
+			encode(shared);
 	}
 
+	/** Position of the message started by beginMessage */
+	private int msg_pos;
+
+	/** Message code of the message started by beginMessage */
+	private Message msg_code;
+
+	/** Name of the message started by beginMessage */
+	private String msg_name;
+
+	/** Begin encoding a message with typed parameters.  Each parameter
+	 * is put with a putParam method, and the message is finished by
+	 * endMessage (or abortMessage).  Parameters put without
+	 * beginMessage can be used as a shared binary encoding (see
+	 * encodeShared).
+	 * This may only be called on the Task Processor thread. */
+	public void beginMessage(Message m, String name) {
+		msg_pos = getBuffer().position();
+		msg_code = m;
+		msg_name = name;
+	}
+
+	/** Discard a message started by beginMessage */
+	public void abortMessage() {
+		getBuffer().position(msg_pos);
+		msg_name = null;
+	}
+
+	/** Put an integer parameter */
+	public void putParam(long v) {
+		ByteBuffer buf = out_buf.reserve(2 + 2 * VARINT_MAX + 10);
+		byte[] b = buf.array();
+		int off = buf.arrayOffset();
+		int pos = off + buf.position();
+		if (version == PROTOCOL_BINARY) {
+			b[pos++] = TAG_INT;
+			pos = putVarlong(b, pos, (v << 1) ^ (v >> 63));
+		} else {
+			b[pos++] = (byte) UNIT_SEP;
+			pos = putDecimal(b, pos, v);
+		}
+		buf.position(pos - off);
+	}
+
+	/** Put a float parameter */
+	public void putParam(float v) {
+		if (version == PROTOCOL_BINARY)
+			putFixedParam(TAG_FLOAT, Float.floatToRawIntBits(v), 4);
+		else
+			putParam(Float.toString(v));
+	}
+
+	/** Put a double parameter */
+	public void putParam(double v) {
+		if (version == PROTOCOL_BINARY) {
+			putFixedParam(TAG_DOUBLE, Double.doubleToRawLongBits(v),
+				8);
+		} else
+			putParam(Double.toString(v));
+	}
+
+	/** Put a boolean parameter */
+	public void putParam(boolean v) {
+		if (version == PROTOCOL_BINARY)
+			putFixedParam(v ? TAG_TRUE : TAG_FALSE, 0, 0);
+		else
+			putParam(v ? "true" : "false");
+	}
+
+	/** Put a string parameter.
+	 * @param v String value, or null for a null reference. */
+	public void putParam(String v) {
+		if (v == null)
+			v = NULL_STR;
+		ByteBuffer buf = out_buf.reserve(1 + VARINT_MAX +
+			3 * v.length());
+		byte[] b = buf.array();
+		int off = buf.arrayOffset();
+		int pos = off + buf.position();
+		if (version == PROTOCOL_BINARY)
+			pos = putParam(b, pos, v);
+		else {
+			b[pos++] = (byte) UNIT_SEP;
+			pos = putString(b, pos, v);
+		}
+		buf.position(pos - off);
+	}
+
+	/** Put a tagged fixed-length binary parameter */
+	private void putFixedParam(byte tag, long v, int n_bytes) {
+		ByteBuffer buf = out_buf.reserve(1 + n_bytes);
+		byte[] b = buf.array();
+		int off = buf.arrayOffset();
+		int pos = off + buf.position();
+		b[pos++] = tag;
+		pos = putFixed(b, pos, v, n_bytes);
+		buf.position(pos - off);
+	}
+
+	/** Finish encoding a message started by beginMessage.  The
+	 * message code and name are put before the parameters now, so an
+	 * aborted message never changes the name dictionary. */
+	public void endMessage() {
+		int n_params = getBuffer().position() - msg_pos;
+		int n_head = (version == PROTOCOL_BINARY)
+		           ? VARINT_MAX + 1 + nameMaxLength(msg_name)
+		           : 2 + 3 * msg_name.length();
+		ByteBuffer buf = out_buf.reserve(n_head + 1);
+		byte[] b = buf.array();
+		int off = buf.arrayOffset();
+		int pos = off + msg_pos;
+		System.arraycopy(b, pos, b, pos + n_head, n_params);
+		int end;
+		if (version == PROTOCOL_BINARY) {
+			int body = pos + VARINT_MAX;
+			end = body;
+			b[end++] = (byte) msg_code.code;
+			end = putName(b, end, msg_code, msg_name, sent);
+			System.arraycopy(b, pos + n_head, b, end, n_params);
+			end = putFrameLength(b, pos, body, end + n_params);
+		} else {
+			end = pos;
+			b[end++] = (byte) msg_code.code;
+			b[end++] = (byte) UNIT_SEP;
+			end = putString(b, end, msg_name);
+			System.arraycopy(b, pos + n_head, b, end, n_params);
+			end += n_params;
+			b[end++] = (byte) RECORD_SEP;
+		}
+		buf.position(end - off);
+		msg_name = null;
+	}
+
+	/** Set the protocol version.  All following messages are encoded
+	 * using the new version.
+	 * @param v Protocol version (PROTOCOL_TEXT or PROTOCOL_BINARY). */
+	public void setVersion(int v) {
+		version = v;
+	}
+
+	/** Get the protocol version */
+	public int getVersion() {
+		return version;
+	}
+
+	/** Encode one message which was already encoded to bytes.
+	 * The message must be encoded with the same protocol version.
+	 * This may only be called on the Task Processor thread.
+	 * @param msg Encoded message; must not be modified. */
+	public void encode(byte[] msg) throws IOException {
+		out_buf.write(msg, 0, msg.length);
+	}
+
+	/** Flush the encoded data.  Messages are encoded directly into the
+	 * output buffer, so there is nothing to flush. */
+	public void flush() throws IOException { }
+
 	/** Get the current output buffer */
 	public ByteBuffer getBuffer() {
 		return out_buf.getBuffer();
 	}
 
+	/** Get a copy of all encoded data */
+	public byte[] toByteArray() {
+		ByteBuffer buf = getBuffer();
+		int off = buf.arrayOffset();
+		return Arrays.copyOfRange(buf.array(), off,
+			off + buf.position());
+	}
+
 	/** Check if there is any encoded data */
 	public boolean hasData() {
 		return getBuffer().position() > 0;
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2008-2017  Minnesota Department of Transportation
+ * Copyright (C) 2008-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,6 +14,11 @@
  */
 package us.mn.state.dot.sonar;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
 /**
  * A name represents a type, object or attribute in SONAR namespace.
  *
@@ -24,6 +29,251 @@ public class Name {
 	/** Name separator */
 	static private final String SEP = "/";
 
+	/** Name separator character */
+	static private final char SEP_CHAR = '/';
+
+	/** Empty array of name parts */
+	static private final String[] NO_PARTS = new String[0];
+
+	/** Maximum number of cached names */
+	static private final int MAX_NAMES = 65536;
+
+	/** Number of cached names to keep when the cache is swept */
+	static private final int KEEP_NAMES = MAX_NAMES / 4 * 3;
+
+	/** Cached names for one type */
+	static private final class TypeNames {
+		private final Name name;
+		private final ConcurrentHashMap<String, ObjectNames> objects =
+			new ConcurrentHashMap<String, ObjectNames>();
+		private TypeNames(String tname) {
+			name = new Name(tname);
+		}
+	}
+
+	/** Empty array of names */
+	static private final Name[] NO_NAMES = new Name[0];
+
+	/** Cached names for one object and its attributes.  Objects have
+	 * few attributes, so they are kept in an array which is replaced
+	 * when one is added.  The used flag is set on each lookup, and
+	 * cleared when the cache is swept, so names in use stay cached. */
+	static private final class ObjectNames {
+		private final Name name;
+		private volatile Name[] attrs = NO_NAMES;
+		private volatile boolean used = true;
+		private ObjectNames(Name n) {
+			name = n;
+		}
+		private ObjectNames use() {
+			if (!used)
+				used = true;
+			return this;
+		}
+		private Name lookup(String aname) {
+			for (Name n: attrs) {
+				if (n.parts[2].equals(aname))
+					return n;
+			}
+			return null;
+		}
+		private synchronized Name add(Name name) {
+			Name n = lookup(name.parts[2]);
+			if (n != null)
+				return n;
+			Name[] a = attrs;
+			Name[] na = new Name[a.length + 1];
+			System.arraycopy(a, 0, na, 0, a.length);
+			na[a.length] = name;
+			attrs = na;
+			return name;
+		}
+	}
+
+	/** Cache of names, keyed by type, object and attribute parts.
+	 * Lookups don't lock or build a path. */
+	static private final ConcurrentHashMap<String, TypeNames> TYPES =
+		new ConcurrentHashMap<String, TypeNames>();
+
+	/** Number of cached object and attribute names */
+	static private final AtomicInteger N_NAMES = new AtomicInteger();
+
+	/** Count a name added to the cache, sweeping it when full */
+	static private void added() {
+		if (N_NAMES.incrementAndGet() > MAX_NAMES)
+			sweep();
+	}
+
+	/** Sweep the cache, evicting objects which were not used since the
+	 * previous sweep (along with their attributes).  If too many were
+	 * used, others are evicted too, so each sweep frees some space. */
+	static private synchronized void sweep() {
+		if (N_NAMES.get() <= MAX_NAMES)
+			return;
+		int n = 0;
+		for (TypeNames tn: TYPES.values()) {
+			Iterator<ObjectNames> it = tn.objects.values()
+				.iterator();
+			while (it.hasNext()) {
+				ObjectNames on = it.next();
+				int c = 1 + on.attrs.length;
+				if (on.used && n + c <= KEEP_NAMES) {
+					on.used = false;
+					n += c;
+				} else
+					it.remove();
+			}
+		}
+		N_NAMES.set(n);
+	}
+
+	/** Get the cached names for a type */
+	static private TypeNames typeNames(String tname) {
+		TypeNames tn = TYPES.get(tname);
+		if (tn == null) {
+			tn = new TypeNames(tname);
+			TypeNames t = TYPES.putIfAbsent(tname, tn);
+			if (t != null)
+				return t;
+		}
+		return tn;
+	}
+
+	/** Get the cached names for an object */
+	static private ObjectNames objectNames(String tname, String oname) {
+		TypeNames tn = typeNames(tname);
+		ObjectNames on = tn.objects.get(oname);
+		if (on != null)
+			return on.use();
+		on = new ObjectNames(new Name(tname, oname));
+		ObjectNames o = tn.objects.putIfAbsent(oname, on);
+		if (o != null)
+			return o.use();
+		added();
+		return on;
+	}
+
+	/** Get a cached name.  This should only be used for names created
+	 * by the server or from trusted sources; names parsed from client
+	 * messages should be created with the constructor.
+	 * @param n Name path.
+	 * @return Shared name instance. */
+	static public Name create(String n) {
+		String[] p = split(n);
+		// Only paths in the same form as their parts are cached
+		if (n.length() + 1 != pathLength(p))
+			return new Name(n, p);
+		else if (p.length == 1)
+			return typeNames(p[0]).name;
+		else if (p.length == 2)
+			return create(p[0], p[1]);
+		else if (p.length == 3)
+			return create(p[0], p[1], p[2]);
+		else
+			return new Name(n, p);
+	}
+
+	/** Get the length of a path joined from parts, plus one */
+	static private int pathLength(String[] parts) {
+		int len = 0;
+		for (String p: parts)
+			len += p.length() + 1;
+		return len;
+	}
+
+	/** Get a cached name with a type and object */
+	static public Name create(String tname, String oname) {
+		return objectNames(tname, oname).name;
+	}
+
+	/** Get a cached name with a type, object and attribute */
+	static public Name create(String tname, String oname, String aname) {
+		ObjectNames on = objectNames(tname, oname);
+		Name name = on.lookup(aname);
+		if (name != null)
+			return name;
+		name = new Name(tname, oname, aname);
+		// Only names with exactly these parts are cached
+		if (name.parts.length != 3 || !name.parts[2].equals(aname))
+			return name;
+		Name n = on.add(name);
+		if (n == name)
+			added();
+		return n;
+	}
+
+	/** Get a cached name for a SONAR object */
+	static public Name create(SonarObject o) {
+		return create(o.getTypeName(), o.getName());
+	}
+
+	/** Get a cached name for an attribute of a SONAR object */
+	static public Name create(SonarObject o, String aname) {
+		return create(o.getTypeName(), o.getName(), aname);
+	}
+
+	/** Make an array of name parts, if none contain a separator.
+	 * @return Array of parts, or null if path must be split. */
+	static private String[] join(String... parts) {
+		for (String p: parts) {
+			if (p.indexOf(SEP_CHAR) >= 0)
+				return null;
+		}
+		// Trailing empty parts are dropped, just like split
+		int n = parts.length;
+		while (n > 0 && parts[n - 1].length() == 0)
+			n--;
+		if (n == parts.length)
+			return parts;
+		String[] p = new String[n];
+		System.arraycopy(parts, 0, p, 0, n);
+		return p;
+	}
+
+	/** Split a path into parts on the separator.  This matches
+	 * String.split, dropping trailing empty parts, without using a
+	 * regular expression. */
+	static private String[] split(String path) {
+		int len = path.length();
+		while (len > 0 && path.charAt(len - 1) == SEP_CHAR)
+			len--;
+		if (len < 1)
+			return NO_PARTS;
+		int n = 1;
+		for (int i = 0; i < len; i++) {
+			if (path.charAt(i) == SEP_CHAR)
+				n++;
+		}
+		String[] parts = new String[n];
+		int s = 0;
+		for (int i = 0; i < n - 1; i++) {
+			int e = path.indexOf(SEP_CHAR, s);
+			parts[i] = path.substring(s, e);
+			s = e + 1;
+		}
+		parts[n - 1] = path.substring(s, len);
+		return parts;
+	}
+
+	/** Maximum number of cached object patterns */
+	static private final int MAX_PATTERNS = 1024;
+
+	/** Cache of compiled object patterns */
+	static private final ConcurrentHashMap<String, Pattern> PATTERNS =
+		new ConcurrentHashMap<String, Pattern>();
+
+	/** Get a compiled object pattern */
+	static private Pattern getPattern(String o) {
+		Pattern p = PATTERNS.get(o);
+		if (p == null) {
+			p = Pattern.compile(o);
+			if (PATTERNS.size() >= MAX_PATTERNS)
+				PATTERNS.clear();
+			PATTERNS.put(o, p);
+		}
+		return p;
+	}
+
 	/** Test if a SONAR path is absolute (versus relative) */
 	static public boolean isAbsolute(String p) {
 		return p.contains(SEP);
@@ -35,28 +285,35 @@ public class Name {
 	/** Name parts */
 	private final String[] parts;
 
+	/** Full object name (created on first use) */
+	private String obj_name;
+
+	/** Attribute name with no object (created on first use) */
+	private String attr_name;
+
 	/** Create a new name */
 	public Name(String n) {
 		path = n;
-		parts = getParts();
+		parts = split(n);
 	}
 
-	/** Get the parts of a name */
-	private String[] getParts() {
-		if (path.length() < 1)
-			return new String[0];
-		else
-			return path.split(SEP);
+	/** Create a new name.
+	 * @param n Name path.
+	 * @param p Parts of path, or null to split path. */
+	private Name(String n, String[] p) {
+		path = n;
+		parts = (p != null) ? p : split(n);
 	}
 
 	/** Create a name with a type and object */
 	public Name(String tname, String oname) {
-		this(tname + SEP + oname);
+		this(tname + SEP + oname, join(tname, oname));
 	}
 
 	/** Create a name with a type, object and attribute */
 	public Name(String tname, String oname, String aname) {
-		this(tname + SEP + oname + SEP + aname);
+		this(tname + SEP + oname + SEP + aname,
+		     join(tname, oname, aname));
 	}
 
 	/** Create a name for a SONAR object */
@@ -121,12 +378,22 @@ public class Name {
 
 	/** Get the full object name */
 	public String getObjectName() {
-		return getTypePart() + SEP + getObjectPart();
+		String n = obj_name;
+		if (n == null) {
+			n = getTypePart() + SEP + getObjectPart();
+			obj_name = n;
+		}
+		return n;
 	}
 
 	/** Get the attribute name with no object specified */
 	public String getAttributeName() {
-		return getTypePart() + SEP + SEP + getAttributePart();
+		String n = attr_name;
+		if (n == null) {
+			n = getTypePart() + SEP + SEP + getAttributePart();
+			attr_name = n;
+		}
+		return n;
 	}
 
 	/** Check for read privilege.
@@ -148,7 +415,8 @@ public class Name {
 	/** Check if an object matches a privilege */
 	private boolean checkObj(Privilege p) {
 		String o = p.getObjN();
-		return "".equals(o) || getObjectPart().matches(o);
+		return "".equals(o)
+		    || getPattern(o).matcher(getObjectPart()).matches();
 	}
 
 	/** Check if an attribute matches a privilege */
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,6 +16,7 @@ package us.mn.state.dot.sonar;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Iterator;
 
 /**
@@ -228,17 +229,35 @@ abstract public class Namespace {
 	private boolean checkPriv(Name name, User u, Capability c,
 		boolean write)
 	{
+		for (Privilege p: lookupPrivileges(c, name.getTypePart(),
+			write))
+		{
+			if (checkPriv(name, u, p, write))
+				return true;
+		}
+		return false;
+	}
+
+	/** Lookup all privileges for a capability and type.  This can be
+	 * overridden by a subclass to use an index.
+	 * @param c Capability to check.
+	 * @param t Type name.
+	 * @param write Lookup write privileges (or read).
+	 * @return Privileges which may match. */
+	protected Iterable<Privilege> lookupPrivileges(Capability c, String t,
+		boolean write)
+	{
+		ArrayList<Privilege> privs = new ArrayList<Privilege>();
 		Iterator<SonarObject> it = iterator(Privilege.SONAR_TYPE);
 		while (it.hasNext()) {
 			SonarObject so = it.next();
 			if (so instanceof Privilege) {
 				Privilege p = (Privilege) so;
-				if ((p.getCapability() == c)
-				  && checkPriv(name, u, p, write))
-					return true;
+				if (p.getCapability() == c)
+					privs.add(p);
 			}
 		}
-		return false;
+		return privs;
 	}
 
 	/** Check for read/write privilege */
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2017  Minnesota Department of Transportation
+ * Copyright (C) 2017-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -45,4 +45,13 @@ public class Props {
 			throw ConfigurationError.invalidInt(k);
 		}
 	}
+
+	/** Get an optional integer property, or a default value */
+	static public int getIntProp(Properties props, String k, int d)
+		throws ConfigurationError
+	{
+		return (props.getProperty(k) != null)
+		      ? getIntProp(props, k)
+		      : d;
+	}
 }
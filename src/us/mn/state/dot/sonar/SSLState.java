@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2018  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,6 +16,11 @@ package us.mn.state.dot.sonar;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
@@ -35,26 +40,107 @@ public class SSLState {
 	/** Size (in bytes) of network buffers */
 	static private final int NETWORK_SIZE = 1 << 16;
 
+	/** Size (in bytes) of SSL record buffers */
+	static private final int RECORD_SIZE = 1 << 15;
+
+	/** Size (in bytes) of application buffers */
+	static private final int APP_SIZE = 1 << 16;
+
+	/** Default maximum number of idle buffers in each pool */
+	static private final int MAX_IDLE = 256;
+
+	/** Pool of network buffers */
+	static private final BufferPool NET_POOL = new BufferPool(NETWORK_SIZE,
+		MAX_IDLE);
+
+	/** Pool of SSL record buffers */
+	static private final BufferPool RECORD_POOL = new BufferPool(
+		RECORD_SIZE, MAX_IDLE);
+
+	/** Pool of application buffers for decoding and encoding */
+	static private final BufferPool APP_POOL = new BufferPool(APP_SIZE,
+		MAX_IDLE, false);
+
+	/** Configure the buffer pools.  The idle limit should be about the
+	 * number of connections which are expected to be busy at once.
+	 * @param props Properties (sonar.buffer.idle). */
+	static public void configurePools(Properties props)
+		throws ConfigurationError
+	{
+		int mi = Props.getIntProp(props, "sonar.buffer.idle", MAX_IDLE);
+		NET_POOL.setMaxIdle(mi);
+		RECORD_POOL.setMaxIdle(mi);
+		APP_POOL.setMaxIdle(mi);
+	}
+
+	/** Count of completed handshakes */
+	static private final AtomicLong HANDSHAKES = new AtomicLong();
+
+	/** Count of handshakes which resumed a cached session */
+	static private final AtomicLong RESUMED = new AtomicLong();
+
+	/** Get the count of completed handshakes */
+	static public long getHandshakes() {
+		return HANDSHAKES.get();
+	}
+
+	/** Get the count of handshakes which resumed a cached session */
+	static public long getResumed() {
+		return RESUMED.get();
+	}
+
+	/** Get the ratio of resumed sessions to all handshakes */
+	static public float getResumedRatio() {
+		long n = HANDSHAKES.get();
+		return (n > 0) ? (float) RESUMED.get() / n : 0;
+	}
+
 	/** Conduit */
 	private final Conduit conduit;
 
 	/** SSL engine */
 	private final SSLEngine engine;
 
-	/** Byte buffer to store outgoing encrypted network data */
-	private final ByteBuffer net_out;
+	/** Executor for delegated SSL tasks (null to run on caller thread) */
+	private final Executor executor;
+
+	/** Flag indicating delegated tasks are running on the executor */
+	private volatile boolean task_pending;
+
+	/** Time the handshake began */
+	private final long hs_start;
+
+	/** Flag indicating the initial handshake has finished */
+	private boolean hs_finished;
 
-	/** Byte buffer to store incoming encrypted network data */
-	private final ByteBuffer net_in;
+	/** SSL packet buffer size */
+	private final int p_size;
 
-	/** Byte buffer to store incoming SONAR data */
-	private final ByteBuffer app_in;
+	/** SSL application buffer size */
+	private final int a_size;
 
-	/** Byte buffer to wrap outgoing SSL data */
-	private final ByteBuffer ssl_out;
+	/** Lock for outgoing network buffer */
+	private final Object net_out_lock = new Object();
 
-	/** Byte buffer to unwrap incoming SSL data */
-	private final ByteBuffer ssl_in;
+	/** Byte buffer to store outgoing encrypted network data.  This is
+	 * borrowed from the network pool only while it contains data.
+	 * Must be synchronized on net_out_lock. */
+	private ByteBuffer net_out;
+
+	/** Lock for incoming network buffer */
+	private final Object net_in_lock = new Object();
+
+	/** Byte buffer to store incoming encrypted network data.  This is
+	 * borrowed from the network pool only while it contains data.
+	 * Must be synchronized on net_in_lock. */
+	private ByteBuffer net_in;
+
+	/** Flag indicating buffers have been released by dispose.  After
+	 * that, no buffers are borrowed from the pools. */
+	private volatile boolean disposed;
+
+	/** Flag indicating data was passed to the decoder by doRead */
+	private boolean received;
 
 	/** Decoder for messages received */
 	public final MessageDecoder decoder;
@@ -62,41 +148,117 @@ public class SSLState {
 	/** Encoder for messages to send */
 	public final MessageEncoder encoder;
 
-	/** Create a new SONAR SSL state */
-	public SSLState(Conduit c, SSLEngine e) throws SSLException,
-		IOException
+	/** Create a new SONAR SSL state.
+	 * @param c Conduit for connection.
+	 * @param e SSL engine.
+	 * @param ex Executor for delegated SSL tasks, or null to run them on
+	 *           the calling thread. */
+	public SSLState(Conduit c, SSLEngine e, Executor ex)
+		throws SSLException, IOException
 	{
 		conduit = c;
 		engine = e;
+		executor = ex;
 		SSLSession session = engine.getSession();
-		int p_size = session.getPacketBufferSize();
-		int a_size = session.getApplicationBufferSize();
-		net_in = ByteBuffer.allocate(NETWORK_SIZE);
-		net_out = ByteBuffer.allocate(NETWORK_SIZE);
-		app_in = ByteBuffer.allocate(a_size);
-		ssl_out = ByteBuffer.allocate(p_size);
-		ssl_in = ByteBuffer.allocate(a_size);
-		decoder = new MessageDecoder(app_in);
-		encoder = new MessageEncoder(a_size);
+		p_size = session.getPacketBufferSize();
+		a_size = session.getApplicationBufferSize();
+		decoder = new MessageDecoder(APP_POOL);
+		encoder = new MessageEncoder(APP_POOL);
+		hs_start = System.currentTimeMillis();
 		engine.beginHandshake();
 	}
 
-	/** Get the network out buffer */
-	public ByteBuffer getNetOutBuffer() {
-		return net_out;
+	/** Create a new SONAR SSL state, running delegated tasks on the
+	 * calling thread */
+	public SSLState(Conduit c, SSLEngine e) throws SSLException,
+		IOException
+	{
+		this(c, e, null);
+	}
+
+	/** Read from a channel into the network input buffer.
+	 * This may only be called on the I/O thread.
+	 * @param ch Channel to read.
+	 * @return Number of bytes read, or -1 for end-of-stream. */
+	public int readFrom(ReadableByteChannel ch) throws IOException {
+		synchronized (net_in_lock) {
+			if (disposed)
+				return -1;
+			if (net_in == null)
+				net_in = NET_POOL.take();
+			try {
+				return ch.read(net_in);
+			}
+			finally {
+				releaseNetIn();
+			}
+		}
 	}
 
-	/** Ge the network in buffer */
-	public ByteBuffer getNetInBuffer() {
-		return net_in;
+	/** Release the network input buffer if it is empty */
+	private void releaseNetIn() {
+		if (net_in.position() == 0) {
+			NET_POOL.give(net_in);
+			net_in = null;
+		}
+	}
+
+	/** Write from the network output buffer to a channel.
+	 * This may only be called on the I/O thread.
+	 * @param ch Channel to write.
+	 * @return true if the buffer was drained. */
+	public boolean writeTo(WritableByteChannel ch) throws IOException {
+		synchronized (net_out_lock) {
+			if (net_out == null)
+				return true;
+			net_out.flip();
+			try {
+				ch.write(net_out);
+			}
+			finally {
+				net_out.compact();
+			}
+			return releaseNetOut();
+		}
+	}
+
+	/** Release the network output buffer if it is empty.
+	 * @return true if the buffer was released. */
+	private boolean releaseNetOut() {
+		if (net_out.position() == 0) {
+			NET_POOL.give(net_out);
+			net_out = null;
+			return true;
+		} else
+			return false;
+	}
+
+	/** Release all network buffers back to the pool.  Any data in the
+	 * buffers is discarded. */
+	public void dispose() {
+		disposed = true;
+		synchronized (net_in_lock) {
+			if (net_in != null) {
+				NET_POOL.give(net_in);
+				net_in = null;
+			}
+		}
+		synchronized (net_out_lock) {
+			if (net_out != null) {
+				NET_POOL.give(net_out);
+				net_out = null;
+			}
+		}
 	}
 
 	/** Read available data from network input buffer.
-	 * This may only be called on the Task Processor thread. */
+	 * This may only be called on the Task Processor thread.
+	 * @return true if any data was passed to the decoder. */
 	public boolean doRead() throws SSLException {
+		received = false;
 		doUnwrap();
 		while (doHandshake());
-		return app_in.position() > 0;
+		return received;
 	}
 
 	/** Do something to progress handshaking */
@@ -105,8 +267,7 @@ public class SSLState {
 		debugHandshake(hs);
 		switch (hs) {
 		case NEED_TASK:
-			doTask();
-			return true;
+			return doTask();
 		case NEED_WRAP:
 			doWrap();
 			return true;
@@ -144,55 +305,153 @@ public class SSLState {
 
 	/** Check if data can be written to network buffer */
 	public boolean canWrite() {
-		synchronized (net_out) {
-			return net_out.remaining() > ssl_out.capacity();
+		synchronized (net_out_lock) {
+			return net_out == null || net_out.remaining() > p_size;
 		}
 	}
 
-	/** Perform a delegated SSL engine task */
-	private void doTask() {
+	/** Perform delegated SSL engine tasks.  With an executor, the tasks
+	 * are run asynchronously, and the conduit is told to resume
+	 * handshaking when they complete.
+	 * @return true if handshaking can continue now. */
+	private boolean doTask() {
+		if (executor == null) {
+			runTasks();
+			return true;
+		}
+		if (!task_pending) {
+			task_pending = true;
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						runTasks();
+					}
+					finally {
+						task_pending = false;
+						conduit.resumeHandshake();
+					}
+				}
+			});
+		}
+		return false;
+	}
+
+	/** Run all delegated SSL engine tasks */
+	private void runTasks() {
 		Runnable task = engine.getDelegatedTask();
-		if (task != null)
+		while (task != null) {
 			task.run();
+			task = engine.getDelegatedTask();
+		}
 	}
 
-	/** Wrap application data into SSL buffer */
+	/** Wrap application data into SSL buffer.  As many records as will
+	 * fit are wrapped into the network output buffer. */
 	private void doWrap() throws SSLException {
-		ssl_out.clear();
 		ByteBuffer app_out = encoder.getBuffer();
+		ByteBuffer ssl_out = RECORD_POOL.take(p_size);
 		app_out.flip();
 		try {
-			engine.wrap(app_out, ssl_out);
+			while (wrapRecord(app_out, ssl_out)
+			    && app_out.hasRemaining()
+			    && canWrite());
 		}
 		finally {
 			encoder.compact();
+			RECORD_POOL.give(ssl_out);
 		}
-		ssl_out.flip();
-		int n_bytes;
-		synchronized (net_out) {
-			net_out.put(ssl_out);
-			n_bytes = net_out.position();
+		boolean pending;
+		synchronized (net_out_lock) {
+			pending = (net_out != null);
 		}
-		if (n_bytes > 0)
+		if (pending)
 			conduit.enableWrite();
 	}
 
-	/** Unwrap SSL data into appcliation buffer */
+	/** Wrap one SSL record into the network output buffer.
+	 * @param app_out Application data buffer (flipped).
+	 * @param ssl_out Buffer to wrap SSL record.
+	 * @return true if more records may be wrapped. */
+	private boolean wrapRecord(ByteBuffer app_out, ByteBuffer ssl_out)
+		throws SSLException
+	{
+		ssl_out.clear();
+		SSLEngineResult res = engine.wrap(app_out, ssl_out);
+		checkFinished(res);
+		ssl_out.flip();
+		if (ssl_out.hasRemaining()) {
+			synchronized (net_out_lock) {
+				if (disposed)
+					return false;
+				if (net_out == null)
+					net_out = NET_POOL.take();
+				net_out.put(ssl_out);
+			}
+		}
+		return res.getStatus() == SSLEngineResult.Status.OK
+		    && res.bytesConsumed() > 0;
+	}
+
+	/** Unwrap SSL data and pass it to the decoder.  Each record is
+	 * unwrapped into a borrowed buffer and moved to the decoder, so no
+	 * application buffer is kept between reads.
+	 * @return true if any network data was consumed. */
 	private boolean doUnwrap() throws SSLException {
-		synchronized (net_in) {
+		synchronized (net_in_lock) {
+			if (net_in == null)
+				return false;
+			ByteBuffer ssl_in = RECORD_POOL.take(a_size);
 			net_in.flip();
 			try {
 				int n_rem = net_in.remaining();
-				if (n_rem > 0) {
+				while (net_in.hasRemaining()) {
 					ssl_in.clear();
-					engine.unwrap(net_in, ssl_in);
+					boolean more = unwrapRecord(ssl_in);
 					ssl_in.flip();
-					app_in.put(ssl_in);
+					if (ssl_in.hasRemaining()) {
+						decoder.receive(ssl_in);
+						received = true;
+					}
+					if (!more)
+						break;
 				}
 				return net_in.remaining() < n_rem;
 			}
 			finally {
 				net_in.compact();
+				releaseNetIn();
+				RECORD_POOL.give(ssl_in);
+			}
+		}
+	}
+
+	/** Unwrap one SSL record.
+	 * @param ssl_in Buffer to unwrap application data.
+	 * @return true if more records may be unwrapped. */
+	private boolean unwrapRecord(ByteBuffer ssl_in) throws SSLException {
+		SSLEngineResult res = engine.unwrap(net_in, ssl_in);
+		checkFinished(res);
+		return res.getStatus() == SSLEngineResult.Status.OK
+		    && res.bytesConsumed() > 0
+		    && res.getHandshakeStatus() ==
+		       SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+	}
+
+	/** Check if the initial handshake has finished.  A session created
+	 * before the handshake began must have been resumed from the cache. */
+	private void checkFinished(SSLEngineResult res) {
+		if (res.getHandshakeStatus() ==
+		    SSLEngineResult.HandshakeStatus.FINISHED && !hs_finished)
+		{
+			hs_finished = true;
+			HANDSHAKES.incrementAndGet();
+			SSLSession s = engine.getSession();
+			if (s.getCreationTime() < hs_start) {
+				RESUMED.incrementAndGet();
+				if (DEBUG_TLS.isOpen()) {
+					DEBUG_TLS.log("TLS session resumed " +
+						"for " + conduit.getName());
+				}
 			}
 		}
 	}
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -23,6 +23,7 @@ import java.security.KeyStore;
 import java.util.Properties;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManagerFactory;
 
 /**
@@ -32,6 +33,12 @@ import javax.net.ssl.TrustManagerFactory;
  */
 public class Security {
 
+	/** Default maximum number of cached TLS sessions */
+	static private final int CACHE_SIZE = 16384;
+
+	/** Default timeout (seconds) for cached TLS sessions */
+	static private final int CACHE_SEC = 24 * 60 * 60;
+
 	/** Load a KeyStore in the jks format */
 	static private KeyStore loadKeyStore(String keystore)
 		throws GeneralSecurityException, ConfigurationError
@@ -94,7 +101,24 @@ public class Security {
 	{
 		String keystore = Props.getProp(props, "keystore.file");
 		String pwd = Props.getProp(props, "keystore.password");
-		return _createContext(keystore, pwd);
+		SSLContext context = _createContext(keystore, pwd);
+		int size = Props.getIntProp(props, "sonar.tls.cache.size",
+			CACHE_SIZE);
+		int sec = Props.getIntProp(props, "sonar.tls.cache.sec",
+			CACHE_SEC);
+		configureCache(context.getServerSessionContext(), size, sec);
+		configureCache(context.getClientSessionContext(), size, sec);
+		return context;
+	}
+
+	/** Configure a TLS session cache, for session resumption */
+	static private void configureCache(SSLSessionContext sc, int size,
+		int sec)
+	{
+		if (sc != null) {
+			sc.setSessionCacheSize(size);
+			sc.setSessionTimeout(sec);
+		}
 	}
 
 	/** Create and configure an SSL context */
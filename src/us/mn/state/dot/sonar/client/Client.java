@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2016  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,6 +17,10 @@ package us.mn.state.dot.sonar.client;
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.Properties;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +34,7 @@ import us.mn.state.dot.sonar.Conduit;
 import us.mn.state.dot.sonar.ConfigurationError;
 import us.mn.state.dot.sonar.Name;
 import us.mn.state.dot.sonar.Namespace;
+import us.mn.state.dot.sonar.Props;
 import us.mn.state.dot.sonar.Security;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.sonar.SonarObject;
@@ -41,6 +46,45 @@ import us.mn.state.dot.sonar.SonarObject;
  */
 public class Client {
 
+	/** SSL contexts shared by all clients, keyed by keystore file and
+	 * password digest.  Sharing a context allows TLS sessions to be
+	 * resumed on reconnect. */
+	static private final HashMap<String, SSLContext> CONTEXTS =
+		new HashMap<String, SSLContext>();
+
+	/** Get a hex SHA-256 digest of a password, so the password is not
+	 * kept in the context map */
+	static private String digest(String pwd) throws ConfigurationError {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			byte[] d = md.digest(pwd.getBytes(
+				StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b: d)
+				sb.append(String.format("%02x", b & 0xFF));
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw ConfigurationError.generalSecurity(e);
+		}
+	}
+
+	/** Lookup a shared SSL context */
+	static private SSLContext lookupContext(Properties props)
+		throws ConfigurationError
+	{
+		String k = Props.getProp(props, "keystore.file") + '\n' +
+			digest(Props.getProp(props, "keystore.password"));
+		synchronized (CONTEXTS) {
+			SSLContext ctx = CONTEXTS.get(k);
+			if (ctx == null) {
+				ctx = Security.createContext(props);
+				CONTEXTS.put(k, ctx);
+			}
+			return ctx;
+		}
+	}
+
 	/** Exception handler */
 	private final ExceptionHandler handler;
 
@@ -90,9 +134,9 @@ public class Client {
 		throws IOException, ConfigurationError
 	{
 		selector = Selector.open();
-		context = Security.createContext(props);
+		context = lookupContext(props);
 		conduit = new ClientConduit(props, this, selector,
-			createSSLEngine(), h);
+			createSSLEngine(props), h);
 		handler = new ExceptionHandler() {
 			public boolean handle(Exception e) {
 				conduit.disconnect();
@@ -104,9 +148,15 @@ public class Client {
 		thread.setPriority(Thread.MAX_PRIORITY);
 	}
 
-	/** Create an SSL engine in the client context */
-	private SSLEngine createSSLEngine() {
-		SSLEngine engine = context.createSSLEngine();
+	/** Create an SSL engine in the client context.  The engine is
+	 * created with the server host and port, so that a cached session
+	 * can be resumed. */
+	private SSLEngine createSSLEngine(Properties props)
+		throws ConfigurationError
+	{
+		SSLEngine engine = context.createSSLEngine(
+			Props.getProp(props, "sonar.host"),
+			Props.getIntProp(props, "sonar.port"));
 		engine.setUseClientMode(true);
 		return engine;
 	}
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2018  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,11 +17,9 @@ package us.mn.state.dot.sonar.client;
 import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.EnumSet;
 import java.util.List;
 import java.util.Properties;
 import javax.naming.AuthenticationException;
@@ -30,6 +28,8 @@ import us.mn.state.dot.sched.ExceptionHandler;
 import us.mn.state.dot.sonar.Conduit;
 import us.mn.state.dot.sonar.ConfigurationError;
 import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageDecoder;
+import us.mn.state.dot.sonar.MessageEncoder;
 import us.mn.state.dot.sonar.Name;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.sonar.Props;
@@ -47,20 +47,11 @@ class ClientConduit extends Conduit {
 	/** Wait up to 20 seconds for login */
 	static private final long LOGIN_MS = 20000;
 
-	/** Define the set of valid messages from the server */
-	static private final EnumSet<Message> MESSAGES = EnumSet.of(
+	/** Dispatch table of valid messages from the server */
+	static private final Message[] MESSAGES = Message.dispatchTable(
 		Message.QUIT, Message.OBJECT, Message.REMOVE, Message.ATTRIBUTE,
 		Message.TYPE, Message.SHOW);
 
-	/** Lookup a message from the specified message code */
-	static private Message lookupMessage(char code) throws ProtocolError {
-		for (Message m: MESSAGES) {
-			if (code == m.code)
-				return m;
-		}
-		throw ProtocolError.invalidMessageCode();
-	}
-
 	/** Create and configure a socket channel */
 	static private SocketChannel createChannel(String host, int port)
 		throws IOException
@@ -106,6 +97,9 @@ class ClientConduit extends Conduit {
 	/** SSL connection state information */
 	private final SSLState state;
 
+	/** Protocol version to request at LOGIN */
+	private final int protocol;
+
 	/** Cache of all proxy objects */
 	private final ClientNamespace namespace;
 
@@ -146,6 +140,8 @@ class ClientConduit extends Conduit {
 		key = channel.register(selector, SelectionKey.OP_CONNECT);
 		engine.setUseClientMode(true);
 		state = new SSLState(this, engine);
+		protocol = Props.getIntProp(props, "sonar.protocol",
+			MessageEncoder.PROTOCOL_TEXT);
 		namespace = new ClientNamespace();
 		handler = h;
 		connected = false;
@@ -171,11 +167,7 @@ class ClientConduit extends Conduit {
 	/** Read messages from the socket channel.
 	 * @return true if data was successfully read. */
 	boolean doRead() throws IOException {
-		int nbytes;
-		ByteBuffer net_in = state.getNetInBuffer();
-		synchronized (net_in) {
-			nbytes = channel.read(net_in);
-		}
+		int nbytes = state.readFrom(channel);
 		if (nbytes < 0)
 			throw new EOFException();
 		return (nbytes > 0);
@@ -183,14 +175,8 @@ class ClientConduit extends Conduit {
 
 	/** Write pending data to the socket channel */
 	public boolean doWrite() throws IOException {
-		ByteBuffer net_out = state.getNetOutBuffer();
-		synchronized (net_out) {
-			net_out.flip();
-			channel.write(net_out);
-			if (!net_out.hasRemaining())
-				disableWrite();
-			net_out.compact();
-		}
+		if (state.writeTo(channel))
+			disableWrite();
 		return true;
 	}
 
@@ -212,6 +198,7 @@ class ClientConduit extends Conduit {
 	@Override
 	protected void disconnect() {
 		super.disconnect();
+		state.dispose();
 		closeChannel();
 		closeSelector();
 		loggedIn = false;
@@ -247,23 +234,25 @@ class ClientConduit extends Conduit {
 
 	/** Process any incoming messages */
 	private void doProcessMessages() throws IOException, SonarException {
+		MessageDecoder dec = state.decoder;
 		while (state.doRead()) {
-			List<String> params = state.decoder.decode();
+			List<String> params = dec.decode();
 			while (params != null) {
 				if (params.size() > 0)
-					processMessage(params);
-				params = state.decoder.decode();
+					processMessage(dec.getCode(), params);
+				params = dec.decode();
 			}
 		}
 		flush();
 	}
 
-	/** Process one message from the client */
-	private void processMessage(List<String> params) throws SonarException {
-		String c = params.get(0);
-		if (c.length() != 1)
-			throw ProtocolError.invalidMessageCode();
-		Message m = lookupMessage(c.charAt(0));
+	/** Process one message from the server.
+	 * @param code Message code, from the decoder.
+	 * @param params Message parameters. */
+	private void processMessage(char code, List<String> params)
+		throws SonarException
+	{
+		Message m = Message.lookup(MESSAGES, code);
 		m.handle(this, params);
 	}
 
@@ -293,7 +282,12 @@ class ClientConduit extends Conduit {
 	public void doObject(List<String> p) throws SonarException {
 		if (p.size() != 2)
 			throw ProtocolError.wrongParameterCount();
-		namespace.putObject(p.get(1));
+		MessageDecoder dec = state.decoder;
+		if (dec.getNameParts() == 2) {
+			namespace.putObject(dec.getNamePart(0),
+				dec.getNamePart(1));
+		} else
+			namespace.putObject(dec.getName());
 	}
 
 	/** Process a REMOVE message from the server */
@@ -301,7 +295,12 @@ class ClientConduit extends Conduit {
 	public void doRemove(List<String> p) throws SonarException {
 		if (p.size() != 2)
 			throw ProtocolError.wrongParameterCount();
-		namespace.removeObject(p.get(1));
+		MessageDecoder dec = state.decoder;
+		if (dec.getNameParts() == 2) {
+			namespace.removeObject(dec.getNamePart(0),
+				dec.getNamePart(1));
+		} else
+			namespace.removeObject(dec.getName());
 	}
 
 	/** Process an ATTRIBUTE message from the server */
@@ -309,17 +308,23 @@ class ClientConduit extends Conduit {
 	public void doAttribute(List<String> p) throws SonarException {
 		if (p.size() < 2)
 			throw ProtocolError.wrongParameterCount();
-		p.remove(0);
-		String name = p.remove(0);
-		namespace.updateAttribute(name, p.toArray(new String[0]));
+		String[] v = p.subList(2, p.size()).toArray(new String[0]);
+		MessageDecoder dec = state.decoder;
+		if (dec.getNameParts() == 3) {
+			namespace.updateAttribute(dec.getNamePart(0),
+				dec.getNamePart(1), dec.getNamePart(2), v);
+		} else
+			namespace.updateAttribute(dec.getName(), v);
 	}
 
 	/** Process a TYPE message from the server */
 	@Override
 	public void doType(List<String> p) throws SonarException {
-		if (p.size() > 2)
+		if (p.size() > 3)
 			throw ProtocolError.wrongParameterCount();
-		if (p.size() > 1)
+		if (p.size() == 3)
+			acceptProtocol(p.get(2));
+		if (p.size() == 2)
 			namespace.setCurrentType(p.get(1));
 		else {
 			namespace.setCurrentType("");
@@ -328,6 +333,17 @@ class ClientConduit extends Conduit {
 		}
 	}
 
+	/** Accept the protocol version from a LOGIN response.  All following
+	 * messages from the server are decoded with the new version. */
+	private void acceptProtocol(String v) throws SonarException {
+		try {
+			state.decoder.setVersion(Integer.parseInt(v));
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
 	/** Notify login success or failure */
 	private synchronized void notifyLogin() {
 		notify();
@@ -369,7 +385,14 @@ class ClientConduit extends Conduit {
 
 	/** Attempt to log in to the SONAR server */
 	void login(String name, String pwd) throws IOException {
-		state.encoder.encode(Message.LOGIN, name, new String[] {pwd});
+		if (protocol > MessageEncoder.PROTOCOL_TEXT) {
+			state.encoder.encode(Message.LOGIN, name, new String[] {
+				pwd, String.valueOf(protocol)
+			});
+		} else {
+			state.encoder.encode(Message.LOGIN, name,
+				new String[] {pwd});
+		}
 		flush();
 	}
 
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -73,10 +73,40 @@ public class ClientNamespace extends Namespace {
 			throw NamespaceError.nameInvalid(name);
 	}
 
+	/** Get the TypeCache for a type name part */
+	private TypeCache lookupTypeCache(String tname) throws NamespaceError {
+		TypeCache tc = types.get(tname);
+		if (tc != null) {
+			cur_type = tc;
+			return tc;
+		} else
+			throw NamespaceError.nameInvalid(tname);
+	}
+
+	/** Put a new object in the cache, from name parts.  The parts are
+	 * from the name dictionary, so no parsing is needed. */
+	void putObject(String t, String o) throws NamespaceError {
+		cur_obj = lookupTypeCache(t).add(o);
+	}
+
+	/** Remove an object from the cache, from name parts */
+	void removeObject(String t, String o) throws NamespaceError {
+		lookupTypeCache(t).remove(o);
+	}
+
+	/** Update an object attribute, from name parts */
+	void updateAttribute(String t, String o, String a, String[] v)
+		throws SonarException
+	{
+		TypeCache tc = lookupTypeCache(t);
+		cur_obj = tc.getProxy(o);
+		updateAttribute(tc, cur_obj, a, v);
+	}
+
 	/** Put a new object in the cache */
 	void putObject(String n) throws NamespaceError {
 		if (Name.isAbsolute(n)) {
-			Name name = new Name(n);
+			Name name = Name.create(n);
 			if (!name.isObject())
 				throw NamespaceError.nameInvalid(name);
 			cur_obj = getTypeCache(name).add(name.getObjectPart());
@@ -87,7 +117,7 @@ public class ClientNamespace extends Namespace {
 	/** Remove an object from the cache */
 	void removeObject(String n) throws NamespaceError {
 		if (Name.isAbsolute(n)) {
-			Name name = new Name(n);
+			Name name = Name.create(n);
 			if (!name.isObject())
 				throw NamespaceError.nameInvalid(name);
 			getTypeCache(name).remove(name.getObjectPart());
@@ -98,7 +128,7 @@ public class ClientNamespace extends Namespace {
 	/** Update an object attribute */
 	void updateAttribute(String n, String[] v) throws SonarException {
 		if (Name.isAbsolute(n)) {
-			Name name = new Name(n);
+			Name name = Name.create(n);
 			if (!name.isAttribute())
 				throw ProtocolError.wrongParameterCount();
 			TypeCache t = getTypeCache(name);
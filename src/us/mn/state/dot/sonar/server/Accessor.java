@@ -0,0 +1,225 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import us.mn.state.dot.sonar.MessageEncoder;
+import us.mn.state.dot.sonar.Namespace;
+import us.mn.state.dot.sonar.ProtocolError;
+import us.mn.state.dot.sonar.SonarException;
+import us.mn.state.dot.sonar.SonarObject;
+
+/**
+ * An accessor invokes one method (setter, getter, etc.) on SONAR objects.
+ * The method is looked up once as a method handle, adapted to a generic
+ * type for its parameter count, so invoking it does not need reflection.
+ */
+final class Accessor {
+
+	/** Lookup for creating method handles */
+	static private final MethodHandles.Lookup LOOKUP =
+		MethodHandles.lookup();
+
+	/** Method type for methods with no parameters */
+	static private final MethodType TYPE_0 = MethodType.methodType(
+		Object.class, Object.class);
+
+	/** Method type for methods with one parameter */
+	static private final MethodType TYPE_1 = MethodType.methodType(
+		Object.class, Object.class, Object.class);
+
+	/** Method type for methods with more parameters (spread) */
+	static private final MethodType TYPE_N = MethodType.methodType(
+		Object.class, Object.class, Object[].class);
+
+	/** Create a method handle adapted to a generic type */
+	static private MethodHandle createHandle(Method m) {
+		int n = m.getParameterTypes().length;
+		try {
+			MethodHandle h = LOOKUP.unreflect(m);
+			switch (n) {
+			case 0:
+				return h.asType(TYPE_0);
+			case 1:
+				return h.asType(TYPE_1);
+			default:
+				return h.asSpreader(Object[].class, n)
+				        .asType(TYPE_N);
+			}
+		}
+		catch (IllegalAccessException e) {
+			// Fail when invoked, like reflection
+			return throwHandle(e, (n == 0) ? TYPE_0
+			                     : (n == 1) ? TYPE_1 : TYPE_N);
+		}
+	}
+
+	/** Create a method handle which throws an exception */
+	static private MethodHandle throwHandle(Exception e, MethodType mt) {
+		MethodHandle h = MethodHandles.throwException(Object.class,
+			e.getClass());
+		h = MethodHandles.insertArguments(h, 0, e);
+		return MethodHandles.dropArguments(h, 0,
+			mt.parameterArray());
+	}
+
+	/** Create a codec for a getter or setter of a single value */
+	static private AttributeCodec createCodec(Method m) {
+		Class[] pt = m.getParameterTypes();
+		try {
+			switch (pt.length) {
+			case 0:
+				return AttributeCodec.getter(
+					LOOKUP.unreflect(m), m.getReturnType());
+			case 1:
+				return AttributeCodec.setter(
+					LOOKUP.unreflect(m), pt[0]);
+			default:
+				return null;
+			}
+		}
+		catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/** Parameter types of method */
+	private final Class[] p_types;
+
+	/** Method handle (adapted to generic type) */
+	private final MethodHandle handle;
+
+	/** Codec for single values (null if none) */
+	private final AttributeCodec codec;
+
+	/** Create a new accessor */
+	public Accessor(Method m) {
+		p_types = m.getParameterTypes();
+		handle = createHandle(m);
+		codec = createCodec(m);
+	}
+
+	/** Invoke a getter and marshall the result.
+	 * @param o Object to invoke method on.
+	 * @param ns Namespace for marshalling result.
+	 * @return Marshalled values. */
+	public String[] get(SonarObject o, Namespace ns)
+		throws SonarException
+	{
+		if (codec != null && p_types.length == 0)
+			return new String[] { codec.get(o) };
+		Object result = invoke(o);
+		if (result instanceof Object[]) {
+			Object[] r = (Object []) result;
+			String[] res = new String[r.length];
+			for (int i = 0; i < r.length; i++)
+				res[i] = ns.marshall(r[i]);
+			return res;
+		} else
+			return new String[] { ns.marshall(result) };
+	}
+
+	/** Invoke a getter and put the result into a message encoder.
+	 * @param o Object to invoke method on.
+	 * @param enc Message encoder.
+	 * @return false if the getter has no codec (nothing was put). */
+	public boolean encode(SonarObject o, MessageEncoder enc)
+		throws SonarException
+	{
+		if (codec != null && p_types.length == 0) {
+			codec.encode(o, enc);
+			return true;
+		} else
+			return false;
+	}
+
+	/** Invoke the method with no parameters.
+	 * @param o Object to invoke method on.
+	 * @return Result of method (null for void). */
+	public Object invoke(SonarObject o) throws SonarException {
+		if (p_types.length != 0) {
+			throw new SonarException(new IllegalArgumentException(
+				"wrong number of arguments"));
+		}
+		try {
+			return (Object) handle.invokeExact((Object) o);
+		}
+		catch (Throwable t) {
+			throw new SonarException(
+				new InvocationTargetException(t));
+		}
+	}
+
+	/** Invoke the method with parameters unmarshalled from strings.
+	 * @param o Object to invoke method on.
+	 * @param ns Namespace for unmarshalling parameters.
+	 * @param v Parameter values.
+	 * @return Result of method (null for void). */
+	public Object invoke(SonarObject o, Namespace ns, String[] v)
+		throws SonarException
+	{
+		switch (p_types.length) {
+		case 0:
+			ns.unmarshall(p_types, v);
+			return invoke(o);
+		case 1:
+			if (codec != null)
+				return invokeCodec(o, ns, v);
+			return invokeOne(o, ns.unmarshall(p_types[0], v));
+		default:
+			return invokeSpread(o, ns.unmarshall(p_types, v));
+		}
+	}
+
+	/** Invoke a method with one parameter, using the codec */
+	private Object invokeCodec(SonarObject o, Namespace ns, String[] v)
+		throws SonarException
+	{
+		if (v.length != 1)
+			throw ProtocolError.wrongParameterCount();
+		codec.set(o, ns, v[0]);
+		return null;
+	}
+
+	/** Invoke a method with one parameter */
+	private Object invokeOne(SonarObject o, Object p)
+		throws SonarException
+	{
+		try {
+			return (Object) handle.invokeExact((Object) o, p);
+		}
+		catch (Throwable t) {
+			throw new SonarException(
+				new InvocationTargetException(t));
+		}
+	}
+
+	/** Invoke a method with more parameters */
+	private Object invokeSpread(SonarObject o, Object[] params)
+		throws SonarException
+	{
+		try {
+			return (Object) handle.invokeExact((Object) o, params);
+		}
+		catch (Throwable t) {
+			throw new SonarException(
+				new InvocationTargetException(t));
+		}
+	}
+}
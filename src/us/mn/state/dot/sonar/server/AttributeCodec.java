@@ -0,0 +1,510 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageEncoder;
+import us.mn.state.dot.sonar.Namespace;
+import us.mn.state.dot.sonar.ProtocolError;
+import us.mn.state.dot.sonar.SonarException;
+import us.mn.state.dot.sonar.SonarObject;
+
+/**
+ * An attribute codec marshalls values for one getter or setter method of a
+ * single (non-array) type.  It is selected once when an attribute is
+ * registered, and invokes the method handle with the exact primitive type,
+ * so values are never boxed.  Getter values can also be put directly into a
+ * message encoder, so the binary protocol doesn't need to parse strings.
+ */
+abstract class AttributeCodec {
+
+	/** NULL REF string */
+	static private final String NULL_STR =
+		String.valueOf(Message.NULL_REF.code);
+
+	/** Number of small integer strings to keep */
+	static private final int SMALL_INTS = 1024;
+
+	/** Strings for small non-negative integers.  Counters and detector
+	 * values are usually small, so these don't need to be allocated. */
+	static private final String[] SMALL = new String[SMALL_INTS];
+	static {
+		for (int i = 0; i < SMALL_INTS; i++)
+			SMALL[i] = Integer.toString(i);
+	}
+
+	/** Format an integer value */
+	static private String formatInt(int v) {
+		return (v >= 0 && v < SMALL_INTS)
+		      ? SMALL[v]
+		      : Integer.toString(v);
+	}
+
+	/** Format a long value */
+	static private String formatLong(long v) {
+		return (v >= 0 && v < SMALL_INTS)
+		      ? SMALL[(int) v]
+		      : Long.toString(v);
+	}
+
+	/** Format a boolean value */
+	static private String formatBoolean(boolean v) {
+		return v ? "true" : "false";
+	}
+
+	/** Check that a parameter is not a null reference */
+	static private String checkNull(String p) throws ProtocolError {
+		if (NULL_STR.equals(p))
+			throw ProtocolError.invalidParameter();
+		return p;
+	}
+
+	/** Parse an integer parameter */
+	static private int parseInt(String p) throws ProtocolError {
+		try {
+			return Integer.parseInt(checkNull(p));
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
+	/** Parse a short parameter */
+	static private short parseShort(String p) throws ProtocolError {
+		try {
+			return Short.parseShort(checkNull(p));
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
+	/** Parse a long parameter */
+	static private long parseLong(String p) throws ProtocolError {
+		try {
+			return Long.parseLong(checkNull(p));
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
+	/** Parse a float parameter */
+	static private float parseFloat(String p) throws ProtocolError {
+		try {
+			return Float.parseFloat(checkNull(p));
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
+	/** Parse a double parameter */
+	static private double parseDouble(String p) throws ProtocolError {
+		try {
+			return Double.parseDouble(checkNull(p));
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
+	/** Parse a boolean parameter */
+	static private boolean parseBoolean(String p) throws ProtocolError {
+		return Boolean.parseBoolean(checkNull(p));
+	}
+
+	/** Create an exception for a method which threw */
+	static private SonarException invokeError(Throwable t) {
+		return new SonarException(new InvocationTargetException(t));
+	}
+
+	/** Get the handle type for a value type */
+	static private Class handleType(Class t) {
+		return (t.isPrimitive() || t == String.class)
+		      ? t
+		      : Object.class;
+	}
+
+	/** Create a codec for a getter method.
+	 * @param h Method handle of getter.
+	 * @param t Return type of getter.
+	 * @return Codec, or null if type has no codec. */
+	static public AttributeCodec getter(MethodHandle h, Class t) {
+		AttributeCodec c = create(t);
+		if (c != null) {
+			c.handle = h.asType(MethodType.methodType(
+				handleType(t), Object.class));
+		}
+		return c;
+	}
+
+	/** Create a codec for a setter method.
+	 * @param h Method handle of setter.
+	 * @param t Parameter type of setter.
+	 * @return Codec, or null if type has no codec. */
+	static public AttributeCodec setter(MethodHandle h, Class t) {
+		AttributeCodec c = create(t);
+		if (c != null) {
+			c.handle = h.asType(MethodType.methodType(
+				void.class, Object.class, handleType(t)));
+		}
+		return c;
+	}
+
+	/** Create a codec for a value type */
+	static private AttributeCodec create(Class t) {
+		if (t == Integer.TYPE)
+			return new IntCodec();
+		else if (t == Short.TYPE)
+			return new ShortCodec();
+		else if (t == Long.TYPE)
+			return new LongCodec();
+		else if (t == Float.TYPE)
+			return new FloatCodec();
+		else if (t == Double.TYPE)
+			return new DoubleCodec();
+		else if (t == Boolean.TYPE)
+			return new BooleanCodec();
+		else if (t == String.class)
+			return new StringCodec();
+		else if (SonarObject.class.isAssignableFrom(t))
+			return new ObjectCodec(t);
+		else
+			return null;
+	}
+
+	/** Method handle (adapted to exact value type) */
+	protected MethodHandle handle;
+
+	/** Get an attribute value.
+	 * @param o Object to invoke getter on.
+	 * @return Marshalled value. */
+	abstract public String get(SonarObject o) throws SonarException;
+
+	/** Put an attribute value into a message encoder.
+	 * @param o Object to invoke getter on.
+	 * @param enc Message encoder. */
+	abstract public void encode(SonarObject o, MessageEncoder enc)
+		throws SonarException;
+
+	/** Set an attribute value.
+	 * @param o Object to invoke setter on.
+	 * @param ns Namespace for object references.
+	 * @param p Marshalled value. */
+	abstract public void set(SonarObject o, Namespace ns, String p)
+		throws SonarException;
+
+	/** Codec for int values */
+	static private final class IntCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				return formatInt((int) handle.invokeExact(
+					(Object) o));
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			int v;
+			try {
+				v = (int) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			int v = parseInt(p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for short values */
+	static private final class ShortCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				return formatInt((short) handle.invokeExact(
+					(Object) o));
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			short v;
+			try {
+				v = (short) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			short v = parseShort(p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for long values */
+	static private final class LongCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				return formatLong((long) handle.invokeExact(
+					(Object) o));
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			long v;
+			try {
+				v = (long) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			long v = parseLong(p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for float values */
+	static private final class FloatCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				return Float.toString((float) handle
+					.invokeExact((Object) o));
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			float v;
+			try {
+				v = (float) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			float v = parseFloat(p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for double values */
+	static private final class DoubleCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				return Double.toString((double) handle
+					.invokeExact((Object) o));
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			double v;
+			try {
+				v = (double) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			double v = parseDouble(p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for boolean values */
+	static private final class BooleanCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				return formatBoolean((boolean) handle
+					.invokeExact((Object) o));
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			boolean v;
+			try {
+				v = (boolean) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			boolean v = parseBoolean(p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for string values */
+	static private final class StringCodec extends AttributeCodec {
+		public String get(SonarObject o) throws SonarException {
+			try {
+				String v = (String) handle.invokeExact(
+					(Object) o);
+				return (v != null) ? v : NULL_STR;
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			String v;
+			try {
+				v = (String) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam(v);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			String v = NULL_STR.equals(p) ? null : p;
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+
+	/** Codec for SONAR object references */
+	static private final class ObjectCodec extends AttributeCodec {
+		private final Class type;
+		private ObjectCodec(Class t) {
+			type = t;
+		}
+		public String get(SonarObject o) throws SonarException {
+			try {
+				Object v = (Object) handle.invokeExact(
+					(Object) o);
+				return (v != null)
+				      ? ((SonarObject) v).getName()
+				      : NULL_STR;
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+		public void encode(SonarObject o, MessageEncoder enc)
+			throws SonarException
+		{
+			Object v;
+			try {
+				v = (Object) handle.invokeExact((Object) o);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+			enc.putParam((v != null)
+				? ((SonarObject) v).getName()
+				: null);
+		}
+		public void set(SonarObject o, Namespace ns, String p)
+			throws SonarException
+		{
+			Object v = ns.unmarshall(type, p);
+			try {
+				handle.invokeExact((Object) o, v);
+			}
+			catch (Throwable t) {
+				throw invokeError(t);
+			}
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,12 +14,15 @@
  */
 package us.mn.state.dot.sonar.server;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.HashMap;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageEncoder;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.sonar.SonarObject;
@@ -41,9 +44,6 @@ public class AttributeDispatcher {
 	/** Alternate method name to destroy an object */
 	static private final String DO_DESTROY_METHOD = "doDestroy";
 
-	/** Empty array of parameters */
-	static private final Object[] NO_PARAMS = new Object[0];
-
 	/** Empty array of strings */
 	static private final String[] EMPTY_STRING = new String[0];
 
@@ -117,19 +117,19 @@ public class AttributeDispatcher {
 	/** Constructor to create a new object */
 	private final Constructor constructor;
 
-	/** Method to store an object */
-	private final Method storer;
+	/** Accessor to store an object */
+	private final Accessor storer;
 
-	/** Method to destroy an object */
-	private final Method destroyer;
+	/** Accessor to destroy an object */
+	private final Accessor destroyer;
 
-	/** Mapping of attribute names to setter methods */
-	private final HashMap<String, Method> setters =
-		new HashMap<String, Method>();
+	/** Mapping of attribute names to setter accessors */
+	private final HashMap<String, Accessor> setters =
+		new HashMap<String, Accessor>();
 
-	/** Mapping of attribute names to getter methods */
-	private final HashMap<String, Method> getters =
-		new HashMap<String, Method>();
+	/** Mapping of attribute names to getter accessors */
+	private final HashMap<String, Accessor> getters =
+		new HashMap<String, Accessor>();
 
 	/** Get an array of gettable attributes */
 	public String[] getGettableAttributes() {
@@ -149,8 +149,13 @@ public class AttributeDispatcher {
 		namespace = ns;
 		lookup_attributes(c);
 		constructor = lookup_constructor(c);
-		storer = lookup_storer(c);
-		destroyer = lookup_destroyer(c);
+		storer = createAccessor(lookup_storer(c));
+		destroyer = createAccessor(lookup_destroyer(c));
+	}
+
+	/** Create an accessor for a method (may be null) */
+	static private Accessor createAccessor(Method m) {
+		return (m != null) ? new Accessor(m) : null;
 	}
 
 	/** Lookup all the attributes of the specified class */
@@ -182,7 +187,8 @@ public class AttributeDispatcher {
 	private void lookup_setter(Method im) {
 		Method m = lookup__etter(im);
 		if (m != null)
-			setters.put(attribute_name(im.getName()), m);
+			setters.put(attribute_name(im.getName()),
+				new Accessor(m));
 	}
 
 	/** Lookup a getter method.
@@ -190,7 +196,8 @@ public class AttributeDispatcher {
 	private void lookup_getter(Method im) {
 		Method m = lookup__etter(im);
 		if (m != null)
-			getters.put(attribute_name(im.getName()), m);
+			getters.put(attribute_name(im.getName()),
+				new Accessor(m));
 	}
 
 	/** Lookup a setter or getter method.
@@ -239,49 +246,28 @@ public class AttributeDispatcher {
 		}
 	}
 
-	/** Invoke a method on the given SONAR object */
-	private Object _invoke(SonarObject o, Method method, Object[] params)
-		throws SonarException
-	{
-		try {
-			return method.invoke(o, params);
-		}
-		catch (Exception e) {
-			throw new SonarException(e);
-		}
-	}
-
-	/** Invoke a method on the given SONAR object */
-	private Object invoke(SonarObject o, Method method, String[] v)
-		throws SonarException
-	{
-		Class[] p_types = method.getParameterTypes();
-		Object[] params = namespace.unmarshall(p_types, v);
-		return _invoke(o, method, params);
-	}
-
 	/** Store the given object */
 	public void storeObject(SonarObject o) throws SonarException {
 		if (storer == null)
 			throw PermissionDenied.cannotAdd();
-		invoke(o, storer, EMPTY_STRING);
+		storer.invoke(o, namespace, EMPTY_STRING);
 	}
 
 	/** Destroy the given object */
 	public void destroyObject(SonarObject o) throws SonarException {
 		if (destroyer == null)
 			throw PermissionDenied.cannotRemove();
-		invoke(o, destroyer, EMPTY_STRING);
+		destroyer.invoke(o, namespace, EMPTY_STRING);
 	}
 
 	/** Set the value of the named attribute */
 	public void setValue(SonarObject o, String a, String[] v)
 		throws SonarException
 	{
-		Method m = setters.get(a);
-		if (m == null)
+		Accessor s = setters.get(a);
+		if (s == null)
 			throw PermissionDenied.cannotWrite();
-		invoke(o, m, v);
+		s.invoke(o, namespace, v);
 	}
 
 	/** Lookup the named field from the given class */
@@ -323,17 +309,51 @@ public class AttributeDispatcher {
 	public String[] getValue(SonarObject o, String a)
 		throws SonarException
 	{
-		Method m = getters.get(a);
-		if (m == null)
+		Accessor g = getters.get(a);
+		if (g == null)
+			throw PermissionDenied.cannotRead();
+		return g.get(o, namespace);
+	}
+
+	/** Encode an ATTRIBUTE message with the value of the named
+	 * attribute.  Single values are put with their exact type.
+	 * @param enc Message encoder.
+	 * @param o Object to get attribute value.
+	 * @param a Attribute name.
+	 * @param name Name of message. */
+	public void encodeValue(MessageEncoder enc, SonarObject o, String a,
+		String name) throws SonarException, IOException
+	{
+		Accessor g = getters.get(a);
+		if (g == null)
+			throw PermissionDenied.cannotRead();
+		enc.beginMessage(Message.ATTRIBUTE, name);
+		try {
+			if (!g.encode(o, enc)) {
+				for (String v: g.get(o, namespace))
+					enc.putParam(v);
+			}
+		}
+		catch (SonarException e) {
+			enc.abortMessage();
+			throw e;
+		}
+		enc.endMessage();
+	}
+
+	/** Encode the value of the named attribute for sharing.  Only
+	 * single values with a codec are encoded.
+	 * @param o Object to get attribute value.
+	 * @param a Attribute name.
+	 * @return Shared binary encoding, or null. */
+	public byte[] encodeShared(SonarObject o, String a)
+		throws SonarException, IOException
+	{
+		Accessor g = getters.get(a);
+		if (g == null)
 			throw PermissionDenied.cannotRead();
-		Object result = _invoke(o, m, NO_PARAMS);
-		if (result instanceof Object[]) {
-			Object[] r = (Object [])result;
-			String[] res = new String[r.length];
-			for (int i = 0; i < r.length; i++)
-				res[i] = namespace.marshall(r[i]);
-			return res;
-		} else
-			return new String[] { namespace.marshall(result) };
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		return g.encode(o, enc) ? enc.toByteArray() : null;
 	}
 }
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2018  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,21 +17,23 @@ package us.mn.state.dot.sonar.server;
 import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.nio.ByteBuffer;
 import java.nio.BufferOverflowException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.Date;
-import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.net.ssl.SSLException;
 import static us.mn.state.dot.sched.TimeSteward.currentTimeMillis;
 import us.mn.state.dot.sonar.Conduit;
 import us.mn.state.dot.sonar.Connection;
 import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageDecoder;
+import us.mn.state.dot.sonar.MessageEncoder;
 import us.mn.state.dot.sonar.Name;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.sonar.NamespaceError;
@@ -60,20 +62,24 @@ public class ConnectionImpl extends Conduit implements Connection {
 		return name.isAttribute() && name.getObjectPart().equals("");
 	}
 
-	/** Define the set of valid messages from a client connection */
-	static protected final EnumSet<Message> MESSAGES = EnumSet.of(
+	/** Dispatch table of valid messages from a client connection */
+	static protected final Message[] MESSAGES = Message.dispatchTable(
 		Message.LOGIN, Message.PASSWORD, Message.QUIT,
 		Message.ENUMERATE, Message.IGNORE, Message.OBJECT,
 		Message.REMOVE, Message.ATTRIBUTE);
 
 	/** Lookup a message from the specified message code */
 	static protected Message lookupMessage(char code) throws ProtocolError {
-		for (Message m: MESSAGES)
-			if (code == m.code)
-				return m;
-		throw ProtocolError.invalidMessageCode();
+		return Message.lookup(MESSAGES, code);
 	}
 
+	/** Size of encoder buffer to fill when streaming enumerations */
+	static private final int ENUM_CHUNK_BYTES = 64 * 1024;
+
+	/** Size of encoder buffer when a connection is behind.  Messages
+	 * are held in the backlog while the connection is behind. */
+	static private final int BEHIND_BYTES = 128 * 1024;
+
 	/** Random number generator for session IDs */
 	static protected final Random RAND = new Random();
 
@@ -105,7 +111,10 @@ public class ConnectionImpl extends Conduit implements Connection {
 
 	/** User logged in on the connection.
 	 * May be null (before a successful login). */
-	protected UserImpl user;
+	protected volatile UserImpl user;
+
+	/** Protocol version requested at LOGIN */
+	private int protocol = MessageEncoder.PROTOCOL_TEXT;
 
 	/** Get the user logged in on the connection.
 	 * May be null (before a successful login). */
@@ -144,12 +153,36 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Inet address of client */
 	private final InetAddress address;
 
-	/** SSL state for encrypting network data */
+	/** SSL state for encrypting network data.  Notifications can be
+	 * encoded from any task processor thread, so all access to the
+	 * encoder and SSL engine must be synchronized on this lock. */
 	protected final SSLState state;
 
+	/** Queue of type enumerations being streamed to the client.
+	 * Must be synchronized on the SSL state lock. */
+	private final ArrayDeque<EnumerationCursor> cursors =
+		new ArrayDeque<EnumerationCursor>();
+
+	/** Messages waiting for the connection to catch up.  Only the latest
+	 * attribute notification for each name is kept.
+	 * Must be synchronized on the SSL state lock. */
+	private final NotifyBacklog backlog = new NotifyBacklog(BEHIND_BYTES);
+
+	/** Flag indicating a flush has been scheduled */
+	private final AtomicBoolean flush_pending = new AtomicBoolean();
+
+	/** Flag indicating a read task is queued */
+	private final AtomicBoolean read_queued = new AtomicBoolean();
+
+	/** Flag indicating a flush task is queued */
+	private final AtomicBoolean flush_queued = new AtomicBoolean();
+
 	/** Set of names the connection is watching */
 	protected final Set<String> watching = new HashSet<String>();
 
+	/** Index of watching connections (shared by all connections) */
+	private final WatchIndex<ConnectionImpl> watchers;
+
 	/** Phantom object for setting attributes before storing a new object
 	 * in the database. */
 	protected SonarObject phantom;
@@ -160,9 +193,11 @@ public class ConnectionImpl extends Conduit implements Connection {
 	{
 		processor = p;
 		namespace = processor.getNamespace();
+		watchers = processor.getWatchIndex();
 		skey = k;
 		channel = c;
-		state = new SSLState(this, processor.createSSLEngine());
+		state = new SSLState(this, processor.createSSLEngine(),
+			processor.getHandshakeExecutor());
 		address = c.socket().getInetAddress();
 		StringBuilder h = new StringBuilder();
 		h.append(address.getHostAddress());
@@ -177,47 +212,41 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Start watching the specified name */
 	protected void startWatching(Name name) {
 		synchronized (watching) {
-			watching.remove(name.toString());
-			if (isWatchPositive(name))
-				watching.add(name.toString());
+			watchers.startWatching(watching, name, this);
 		}
 	}
 
 	/** Stop watching the specified name */
 	protected void stopWatching(Name name) {
 		synchronized (watching) {
-			watching.remove(name.toString());
-			if (isWatchNegative(name))
-				watching.add(name.toString());
+			watchers.stopWatching(watching, name, this);
 		}
 	}
 
-	/** Check if the connection is watching a name */
-	protected boolean isWatching(Name name) {
+	/** Stop watching all names */
+	private void clearWatching() {
 		synchronized (watching) {
-			// Object watch is highest priority (positive)
-			if (watching.contains(name.getObjectName()))
-				return true;
-			// Attribute watch is middle priority (negative)
-			if (watching.contains(name.getAttributeName()))
-				return false;
-			// Type watch is lowest priority (positive)
-			return watching.contains(name.getTypePart());
+			watchers.clearWatching(watching, this);
 		}
 	}
 
-	/** Destroy the connection */
+	/** Destroy the connection.  This is called when the connection is
+	 * removed from the namespace, on the object's worker, so the
+	 * disconnect is scheduled on the connection's worker. */
 	public void destroy() {
 		if (isConnected())
-			disconnect("Connection destroyed");
+			scheduleDisconnect("Connection destroyed");
 	}
 
 	/** Disconnect the client connection.
-	 * This may only be called on the Task Processor thread. */
+	 * This may only be called on the connection's worker thread. */
 	protected void disconnect() {
 		super.disconnect();
-		synchronized (watching) {
-			watching.clear();
+		clearWatching();
+		synchronized (state) {
+			cursors.clear();
+			backlog.clear();
+			state.dispose();
 		}
 		processor.disconnect(skey);
 		try {
@@ -230,7 +259,7 @@ public class ConnectionImpl extends Conduit implements Connection {
 	}
 
 	/** Disconnect the client connection.
-	 * This may only be called on the Task Processor thread. */
+	 * This may only be called on the connection's worker thread. */
 	protected void disconnect(String msg) {
 		TaskProcessor.DEBUG.log(msg + " on " + getName() + ", " +
 			getUserName());
@@ -240,11 +269,7 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Read messages from the socket channel.
 	 * This may only be called on the Server thread. */
 	void doRead() throws IOException {
-		int nbytes;
-		ByteBuffer net_in = state.getNetInBuffer();
-		synchronized (net_in) {
-			nbytes = channel.read(net_in);
-		}
+		int nbytes = state.readFrom(channel);
 		if (nbytes > 0)
 			processor.processMessages(this);
 		else if (nbytes < 0)
@@ -254,14 +279,8 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Write pending data to the socket channel.
 	 * This may only be called on the Server thread. */
 	void doWrite() throws IOException {
-		ByteBuffer net_out = state.getNetOutBuffer();
-		synchronized (net_out) {
-			net_out.flip();
-			channel.write(net_out);
-			if (!net_out.hasRemaining())
-				disableWrite();
-			net_out.compact();
-		}
+		if (state.writeTo(channel))
+			disableWrite();
 		processor.flush(this);
 	}
 
@@ -279,58 +298,164 @@ public class ConnectionImpl extends Conduit implements Connection {
 		skey.selector().wakeup();
 	}
 
+	/** Resume handshaking after delegated SSL tasks complete */
+	@Override
+	protected void resumeHandshake() {
+		processor.processMessages(this);
+	}
+
 	/** Notify the client of a new object being added.
 	 * This may only be called on the Task Processor thread. */
 	protected void notifyObject(SonarObject o) {
 		try {
-			namespace.enumerateObject(state.encoder, o);
-			flush();
+			synchronized (state) {
+				// Pending objects will be sent by the cursor
+				if (isPending(o.getTypeName(), o.getName()))
+					return;
+				backlog.add(state.encoder, objectEntry(o));
+				scheduleFlush();
+			}
 		}
 		catch (SonarException e) {
-			disconnect("Notify error: " + e.getMessage());
+			scheduleDisconnect("Notify error: " + e.getMessage());
 		}
 		catch (IOException e) {
-			disconnect("Notify error: " + e.getMessage());
+			scheduleDisconnect("Notify error: " + e.getMessage());
 		}
 	}
 
-	/** Notify the client of a new object being added.
-	 * This may only be called on the Task Processor thread. */
-	void notifyObject(Name name, SonarObject o) {
-		if (isWatching(name))
-			notifyObject(o);
+	/** Schedule a disconnect on the connection's worker.  Notifications
+	 * are sent from other workers, which must not tear down the
+	 * connection while it has tasks in progress. */
+	private void scheduleDisconnect(String msg) {
+		processor.scheduleDisconnect(this, msg);
 	}
 
-	/** Notify the client of an attribute change.
-	 * This may only be called on the Task Processor thread. */
-	void notifyAttribute(Name name, String[] params) {
+	/** Check if the client can read a name */
+	boolean canRead(Name name) {
 		User u = user;
-		if (u != null &&
-		    isWatching(name) &&
-		    namespace.canRead(name, u, address))
-		{
-			notifyAttribute(name.toString(), params);
-		}
+		return u != null && namespace.canRead(name, u, address);
 	}
 
-	/** Notify the client of an attribute change.
-	 * This may only be called on the Task Processor thread. */
-	private void notifyAttribute(String name, String[] params) {
+	/** Notify the client of an attribute change.  The connection must
+	 * be watching the name, and have read privileges.
+	 * This may only be called on the Task Processor thread.
+	 * @param name Attribute name.
+	 * @param msg Encoded ATTRIBUTE message; must not be modified. */
+	void notifyAttribute(Name name, byte[] msg) {
 		try {
-			state.encoder.encode(Message.ATTRIBUTE, name, params);
-			flush();
+			synchronized (state) {
+				// Pending objects will be sent by the cursor
+				if (isPending(name.getTypePart(),
+				              name.getObjectPart()))
+					return;
+				backlog.add(state.encoder, NotifyBacklog
+					.attribute(name.toString(), msg));
+				scheduleFlush();
+			}
+		}
+		catch (SonarException e) {
+			scheduleDisconnect("Notify error: " + e.getMessage());
 		}
 		catch (IOException e) {
-			disconnect("I/O error: notifyAttribute " + name);
+			scheduleDisconnect("I/O error: notifyAttribute " +
+				name);
 		}
 	}
 
-	/** Notify the client of a name being removed.
+	/** Notify the client of a name being removed.  The connection must
+	 * be watching the name.
 	 * This may only be called on the Task Processor thread. */
 	void notifyRemove(Name name) {
-		if (isWatching(name)) {
-			notifyRemove(name.toString());
-			stopWatching(name);
+		synchronized (state) {
+			// Don't remove objects which were never sent
+			if (!isPendingName(name))
+				notifyRemove(name.toString());
+		}
+		stopWatching(name);
+	}
+
+	/** Check if an object is waiting to be sent by a cursor.
+	 * Must be called with the SSL state lock held. */
+	private boolean isPending(String t, String n) {
+		for (EnumerationCursor c: cursors) {
+			if (c.getTypeName().equals(t) && c.isPending(n))
+				return true;
+		}
+		return false;
+	}
+
+	/** Check if an object name is waiting to be sent by a cursor.
+	 * Must be called with the SSL state lock held. */
+	private boolean isPendingName(Name name) {
+		if (name.isObject()) {
+			String t = name.getTypePart();
+			String n = name.getObjectPart();
+			for (EnumerationCursor c: cursors) {
+				if (c.getTypeName().equals(t) &&
+				    c.isPendingName(n))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/** Create a backlog entry for an object.  The object is encoded
+	 * when the entry is sent, with the values current at that time. */
+	private NotifyBacklog.Entry objectEntry(final SonarObject o) {
+		return new NotifyBacklog.Entry() {
+			protected void encode(MessageEncoder enc)
+				throws SonarException, IOException
+			{
+				namespace.enumerateObject(enc, o);
+			}
+		};
+	}
+
+	/** Create a backlog entry for enumerating an object or attribute.
+	 * An error is shown to the client, like an error processing the
+	 * ENUMERATE message. */
+	private NotifyBacklog.Entry enumerateEntry(final Name name) {
+		return new NotifyBacklog.Entry() {
+			protected void encode(MessageEncoder enc)
+				throws IOException
+			{
+				try {
+					namespace.enumerate(enc, name);
+				}
+				catch (SonarException e) {
+					enc.encode(Message.SHOW,
+						e.getMessage());
+				}
+			}
+		};
+	}
+
+	/** Add a message to the backlog (or encode it now if the connection
+	 * is not behind).
+	 * Must be called with the SSL state lock held. */
+	private void addMessage(Message m, String n) throws IOException {
+		try {
+			backlog.add(state.encoder, NotifyBacklog.message(m, n));
+		}
+		catch (SonarException e) {
+			// Plain messages don't throw SonarException
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	/** Stream pending enumerations into the encoder buffer.  Each
+	 * flush fills the buffer up to a chunk size, so enumerating a large
+	 * type only proceeds as the network drains.
+	 * Must be called with the SSL state lock held. */
+	private void encodeCursors() throws SonarException, IOException {
+		// Backlog messages must be sent first
+		if (!backlog.isEmpty())
+			return;
+		EnumerationCursor c = cursors.peek();
+		while (c != null && c.encode(state.encoder, ENUM_CHUNK_BYTES)) {
+			cursors.poll();
+			c = cursors.peek();
 		}
 	}
 
@@ -338,11 +463,13 @@ public class ConnectionImpl extends Conduit implements Connection {
 	 * This may only be called on the Task Processor thread. */
 	protected void notifyRemove(String name) {
 		try {
-			state.encoder.encode(Message.REMOVE, name);
-			flush();
+			synchronized (state) {
+				addMessage(Message.REMOVE, name);
+				scheduleFlush();
+			}
 		}
 		catch (IOException e) {
-			disconnect("I/O error: notifyRemove " + name);
+			scheduleDisconnect("I/O error: notifyRemove " + name);
 		}
 	}
 
@@ -355,6 +482,7 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Process any incoming messages.
 	 * This may only be called on the Task Processor thread. */
 	void processMessages() {
+		read_queued.set(false);
 		if (!isConnected())
 			return;
 		try {
@@ -371,41 +499,53 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Process any incoming messages.
 	 * This may only be called on the Task Processor thread. */
 	protected void _processMessages() throws SSLException, IOException {
-		while (state.doRead()) {
-			List<String> params = state.decoder.decode();
+		while (doReadState()) {
+			MessageDecoder dec = state.decoder;
+			List<String> params = dec.decode();
 			while (params != null) {
-				processMessage(params);
-				params = state.decoder.decode();
+				processMessage(dec.getCode(), params);
+				params = dec.decode();
 			}
 		}
 		flush();
 	}
 
-	/** Process one message from the client.
+	/** Read available data from the SSL state.
 	 * This may only be called on the Task Processor thread. */
-	protected void processMessage(List<String> params)
+	private boolean doReadState() throws SSLException {
+		synchronized (state) {
+			return state.doRead();
+		}
+	}
+
+	/** Process one message from the client.
+	 * This may only be called on the Task Processor thread.
+	 * @param code Message code, from the decoder.
+	 * @param params Message parameters. */
+	protected void processMessage(char code, List<String> params)
 		throws IOException
 	{
 		try {
 			if (params.size() > 0)
-				_processMessage(params);
+				_processMessage(code, params);
 		}
 		catch (SonarException e) {
-			state.encoder.encode(Message.SHOW, e.getMessage());
+			synchronized (state) {
+				addMessage(Message.SHOW, e.getMessage());
+			}
 			TaskProcessor.DEBUG.log("Message error: " +
 				e.getMessage());
 		}
 	}
 
 	/** Process one message from the client.
-	 * This may only be called on the Task Processor thread. */
-	protected void _processMessage(List<String> params)
+	 * This may only be called on the Task Processor thread.
+	 * @param code Message code, from the decoder.
+	 * @param params Message parameters. */
+	protected void _processMessage(char code, List<String> params)
 		throws SonarException
 	{
-		String c = params.get(0);
-		if (c.length() != 1)
-			throw ProtocolError.invalidMessageCode();
-		_processMessage(lookupMessage(c.charAt(0)), params);
+		_processMessage(lookupMessage(code), params);
 	}
 
 	/** Process one message from the client.
@@ -433,18 +573,47 @@ public class ConnectionImpl extends Conduit implements Connection {
 			state.doWrite();
 	}
 
+	/** Schedule a flush of the output buffer.  Notifications are batched
+	 * until the flush is performed, so they can be sent in full-size TLS
+	 * records. */
+	private void scheduleFlush() {
+		if (flush_pending.compareAndSet(false, true))
+			processor.scheduleFlush(this);
+	}
+
+	/** Mark a read task as queued.
+	 * @return false if a read task was already queued. */
+	boolean queueRead() {
+		return read_queued.compareAndSet(false, true);
+	}
+
+	/** Mark a flush task as queued.
+	 * @return false if a flush task was already queued. */
+	boolean queueFlush() {
+		return flush_queued.compareAndSet(false, true);
+	}
+
 	/** Tell the I/O thread to flush the output buffer.
 	 * This may only be called on the Task Processor thread. */
 	@Override
 	public void flush() {
+		flush_pending.set(false);
+		flush_queued.set(false);
 		try {
-			state.encoder.flush();
-			if (isConnected())
-				startWrite();
+			synchronized (state) {
+				if (isConnected()) {
+					backlog.drain(state.encoder);
+					encodeCursors();
+					startWrite();
+				}
+			}
 		}
 		catch (BufferOverflowException e) {
 			disconnect("Buffer overflow error");
 		}
+		catch (SonarException e) {
+			disconnect("Enumerate error: " + e.getMessage());
+		}
 		catch (IOException e) {
 			disconnect("I/O error: " + e.getMessage());
 		}
@@ -456,13 +625,34 @@ public class ConnectionImpl extends Conduit implements Connection {
 	public void doLogin(List<String> params) throws SonarException {
 		if (user != null)
 			throw ProtocolError.alreadyLoggedIn();
-		if (params.size() != 3)
+		if (params.size() < 3 || params.size() > 4)
 			throw ProtocolError.wrongParameterCount();
+		if (params.size() == 4)
+			protocol = parseProtocol(params.get(3));
 		String name = params.get(1);
 		String password = params.get(2);
 		doLogin(name, password.toCharArray());
 	}
 
+	/** Parse a requested protocol version.  The highest supported
+	 * version is used if a higher one is requested. */
+	static private int parseProtocol(String v) throws ProtocolError {
+		try {
+			int p = Integer.parseInt(v);
+			if (p < MessageEncoder.PROTOCOL_TEXT)
+				throw ProtocolError.invalidParameter();
+			return Math.min(p, MessageEncoder.PROTOCOL_BINARY);
+		}
+		catch (NumberFormatException e) {
+			throw ProtocolError.invalidParameter();
+		}
+	}
+
+	/** Get the protocol version for encoding messages */
+	int getProtocol() {
+		return state.encoder.getVersion();
+	}
+
 	/** Login a user */
 	private void doLogin(String name, char[] password) {
 		processor.authenticate(this, name, password);
@@ -473,11 +663,24 @@ public class ConnectionImpl extends Conduit implements Connection {
 	public void finishLogin(UserImpl u) {
 		try {
 			user = u;
-			// The first TYPE message indicates a successful login
-			state.encoder.encode(Message.TYPE);
-			// Send the connection name to the client first
-			state.encoder.encode(Message.SHOW, hostport);
-			flush();
+			synchronized (state) {
+				// Nothing is watched before login, so these
+				// are encoded directly.
+				MessageEncoder enc = state.encoder;
+				// The first TYPE message indicates a
+				// successful login
+				if (protocol > MessageEncoder.PROTOCOL_TEXT) {
+					enc.encode(Message.TYPE, "",
+						new String[] {
+						String.valueOf(protocol)
+					});
+					enc.setVersion(protocol);
+				} else
+					enc.encode(Message.TYPE);
+				// Send the connection name to the client first
+				enc.encode(Message.SHOW, hostport);
+				flush();
+			}
 		}
 		catch (IOException e) {
 			disconnect("I/O error: finishLogin " + e.getMessage());
@@ -488,9 +691,12 @@ public class ConnectionImpl extends Conduit implements Connection {
 	 * This may only be called on the Task Processor thread. */
 	public void failLogin() {
 		try {
-			state.encoder.encode(Message.SHOW, PermissionDenied.
-				authenticationFailed().getMessage());
-			flush();
+			synchronized (state) {
+				addMessage(Message.SHOW,
+					PermissionDenied.authenticationFailed()
+					.getMessage());
+				flush();
+			}
 		}
 		catch (IOException e) {
 			disconnect("I/O error: failLogin " + e.getMessage());
@@ -511,8 +717,10 @@ public class ConnectionImpl extends Conduit implements Connection {
 	/** Fail a PASSWORD change attempt */
 	public void failPassword(String msg) {
 		try {
-			state.encoder.encode(Message.SHOW, msg);
-			flush();
+			synchronized (state) {
+				addMessage(Message.SHOW, msg);
+				flush();
+			}
 		}
 		catch (IOException e) {
 			disconnect("I/O error: failPassword " + e.getMessage());
@@ -537,8 +745,23 @@ public class ConnectionImpl extends Conduit implements Connection {
 		if (!namespace.canRead(name, user, address))
 			throw PermissionDenied.create(name);
 		startWatching(name);
+		if (name.isType()) {
+			// Large types are streamed by flush
+			EnumerationCursor c = namespace.createCursor(name);
+			synchronized (state) {
+				cursors.add(c);
+			}
+			return;
+		}
 		try {
-			namespace.enumerate(state.encoder, name);
+			synchronized (state) {
+				MessageEncoder enc = state.encoder;
+				if (backlog.isEmpty() && !backlog.isBehind(enc))
+					namespace.enumerate(enc, name);
+				else
+					backlog.add(state.encoder,
+						enumerateEntry(name));
+			}
 		}
 		catch (IOException e) {
 			throw new SonarException(e.getMessage());
@@ -614,11 +837,9 @@ public class ConnectionImpl extends Conduit implements Connection {
 		Name name = new Name(params.get(1));
 		if (!namespace.canWrite(name, user, address))
 			throw PermissionDenied.create(name);
-		SonarObject obj = namespace.lookupObject(name);
-		if (obj != null) {
-			namespace.removeObject(obj);
-			processor.notifyRemove(name);
-		} else
+		if (name.isObject())
+			processor.scheduleRemoveObject(this, name);
+		else
 			throw NamespaceError.nameInvalid(name);
 	}
 
@@ -643,7 +864,9 @@ public class ConnectionImpl extends Conduit implements Connection {
 		return namespace.canWrite(name, user, address);
 	}
 
-	/** Set the value of an attribute.
+	/** Set the value of an attribute.  Attributes of existing objects
+	 * are set on the object's worker; a phantom object is created for
+	 * an object which does not exist yet.
 	 * This may only be called on the Task Processor thread. */
 	private void setAttribute(Name name, List<String> params)
 		throws SonarException
@@ -653,10 +876,31 @@ public class ConnectionImpl extends Conduit implements Connection {
 			v[i] =  params.get(i + 2);
 		if (isPhantom(name))
 			namespace.setAttribute(name, v, phantom);
+		else if (namespace.lookupObject(name.getTypePart(),
+		         name.getObjectPart()) != null)
+			processor.scheduleSetAttribute(this, name, v);
 		else {
-			phantom = namespace.setAttribute(name, v);
-			if (phantom == null)
-				processor.notifyAttribute(name, v);
+			SonarObject p = namespace.createObject(name);
+			namespace.setAttribute(name, v, p);
+			phantom = p;
+		}
+	}
+
+	/** Show an error message from a task on another worker.
+	 * This may only be called on the connection's worker thread. */
+	void showError(String msg) {
+		if (!isConnected())
+			return;
+		try {
+			synchronized (state) {
+				addMessage(Message.SHOW, msg);
+			}
+		}
+		catch (IOException e) {
+			disconnect("I/O error: showError " + e.getMessage());
+			return;
 		}
+		TaskProcessor.DEBUG.log("Message error: " + msg);
+		flush();
 	}
 }
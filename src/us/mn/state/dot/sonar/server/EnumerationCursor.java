@@ -0,0 +1,115 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageEncoder;
+import us.mn.state.dot.sonar.SonarException;
+import us.mn.state.dot.sonar.SonarObject;
+
+/**
+ * An enumeration cursor streams all objects of one type to a connection in
+ * chunks.  It iterates over a snapshot of the type, so no lock is held while
+ * encoding.  Objects which are removed before being sent are skipped.
+ */
+class EnumerationCursor {
+
+	/** Comparator for sorting objects by name */
+	static private final Comparator<SonarObject> NAME_COMPARATOR =
+		new Comparator<SonarObject>()
+	{
+		public int compare(SonarObject o0, SonarObject o1) {
+			return o0.getName().compareTo(o1.getName());
+		}
+	};
+
+	/** Type node to enumerate */
+	private final TypeNode type;
+
+	/** Snapshot of objects in the type (sorted by name) */
+	private final SonarObject[] objs;
+
+	/** Position of next object to send */
+	private int pos = -1;
+
+	/** Create a new enumeration cursor */
+	public EnumerationCursor(TypeNode t) {
+		type = t;
+		objs = t.snapshot();
+		Arrays.sort(objs, NAME_COMPARATOR);
+	}
+
+	/** Get the type name */
+	public String getTypeName() {
+		return type.name;
+	}
+
+	/** Encode objects until the encoder buffer reaches a size limit.
+	 * @param enc Message encoder.
+	 * @param n_bytes Size limit of encoder buffer.
+	 * @return true if enumeration is complete. */
+	public boolean encode(MessageEncoder enc, int n_bytes)
+		throws SonarException, IOException
+	{
+		if (pos < 0) {
+			enc.encode(Message.TYPE, type.name);
+			pos = 0;
+		}
+		while (pos < objs.length) {
+			if (enc.getBuffer().position() >= n_bytes)
+				return false;
+			SonarObject o = objs[pos++];
+			if (type.lookupObject(o.getName()) == o)
+				type.enumerateObject(enc, o);
+		}
+		// Notifications may have changed the current type
+		enc.encode(Message.TYPE, type.name);
+		enc.encode(Message.TYPE);
+		return true;
+	}
+
+	/** Get the snapshot index of an object name (or -1) */
+	private int indexOf(String n) {
+		int lo = 0;
+		int hi = objs.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = objs[mid].getName().compareTo(n);
+			if (c < 0)
+				lo = mid + 1;
+			else if (c > 0)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/** Check if an object name has not been sent yet */
+	public boolean isPendingName(String n) {
+		int i = indexOf(n);
+		return i >= 0 && i >= pos;
+	}
+
+	/** Check if an object has not been sent yet.  The object must be
+	 * the same one in the snapshot (not removed and added again). */
+	public boolean isPending(String n) {
+		int i = indexOf(n);
+		return i >= 0 && i >= pos && type.lookupObject(n) == objs[i];
+	}
+}
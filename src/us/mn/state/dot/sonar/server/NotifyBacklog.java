@@ -0,0 +1,145 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageEncoder;
+import us.mn.state.dot.sonar.SonarException;
+
+/**
+ * A notify backlog holds messages for a connection which is behind (its
+ * encoder buffer is full).  All messages are kept in order, and attribute
+ * notifications are conflated, so only the latest message for each name is
+ * kept.  Messages are only encoded as the network drains, so the encoder
+ * buffer stays bounded.
+ */
+class NotifyBacklog {
+
+	/** A message waiting in the backlog */
+	static abstract public class Entry {
+
+		/** Get the conflation key (null if not conflated) */
+		protected String getKey() {
+			return null;
+		}
+
+		/** Encode the message */
+		abstract protected void encode(MessageEncoder enc)
+			throws SonarException, IOException;
+	}
+
+	/** Create an entry for a shared attribute notification.
+	 * @param n Attribute name.
+	 * @param msg Shared encoding (from MessageEncoder.encodeShared). */
+	static public Entry attribute(final String n, final byte[] msg) {
+		return new Entry() {
+			protected String getKey() {
+				return n;
+			}
+			protected void encode(MessageEncoder enc)
+				throws IOException
+			{
+				enc.encodeShared(Message.ATTRIBUTE, n, msg);
+			}
+		};
+	}
+
+	/** Create an entry for a message with a name.
+	 * @param m Message code.
+	 * @param n Message name. */
+	static public Entry message(final Message m, final String n) {
+		return new Entry() {
+			protected void encode(MessageEncoder enc)
+				throws IOException
+			{
+				enc.encode(m, n);
+			}
+		};
+	}
+
+	/** Size of encoder buffer when a connection is behind */
+	private final int behind_bytes;
+
+	/** Waiting messages, in order.  Conflated entries are keyed by name,
+	 * and other entries by a serial number. */
+	private final LinkedHashMap<Object, Entry> entries =
+		new LinkedHashMap<Object, Entry>();
+
+	/** Serial number for entries which are not conflated */
+	private long serial;
+
+	/** Create a new notify backlog.
+	 * @param bb Size of encoder buffer when a connection is behind. */
+	public NotifyBacklog(int bb) {
+		behind_bytes = bb;
+	}
+
+	/** Check if an encoder is behind (buffer is full) */
+	public boolean isBehind(MessageEncoder enc) {
+		return enc.getBuffer().position() >= behind_bytes;
+	}
+
+	/** Check if the backlog is empty */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/** Get the number of waiting messages */
+	public int size() {
+		return entries.size();
+	}
+
+	/** Add a message.  It is encoded immediately unless the encoder is
+	 * behind or other messages are waiting.
+	 * @param enc Message encoder.
+	 * @param e Message entry. */
+	public void add(MessageEncoder enc, Entry e) throws SonarException,
+		IOException
+	{
+		if (entries.isEmpty() && !isBehind(enc))
+			e.encode(enc);
+		else {
+			Object k = e.getKey();
+			if (k != null) {
+				// Replaced entries move to the end, so they
+				// stay in order with other messages
+				entries.remove(k);
+			} else
+				k = Long.valueOf(serial++);
+			entries.put(k, e);
+		}
+	}
+
+	/** Encode waiting messages until the encoder is behind.
+	 * @param enc Message encoder. */
+	public void drain(MessageEncoder enc) throws SonarException,
+		IOException
+	{
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext() && !isBehind(enc)) {
+			Entry e = it.next();
+			it.remove();
+			e.encode(enc);
+		}
+	}
+
+	/** Remove all waiting messages */
+	public void clear() {
+		entries.clear();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import us.mn.state.dot.sched.Job;
+import us.mn.state.dot.sonar.Name;
+
+/**
+ * A notify throttle limits the rate of attribute notifications.  After a
+ * notification is sent, changes to the same attribute are coalesced until
+ * the interval expires, and then the latest value is sent.
+ */
+abstract class NotifyThrottle {
+
+	/** Throttle state for one name */
+	static private final class Entry {
+		/** Flag indicating a change is pending */
+		private boolean pending;
+	}
+
+	/** Mapping of throttled names to entries.  A name is throttled for
+	 * one interval after each notification. */
+	private final HashMap<String, Entry> throttled =
+		new HashMap<String, Entry>();
+
+	/** Add a job to the timer */
+	abstract protected void addJob(Job job);
+
+	/** Send the latest value of a released name */
+	abstract protected void sendLatest(Name name);
+
+	/** Check if a notification should be deferred.
+	 * @param name Attribute name.
+	 * @param interval Minimum notify interval (ms).
+	 * @return true if notification is deferred; false if it should be
+	 *         sent now. */
+	public synchronized boolean defer(Name name, int interval) {
+		String n = name.toString();
+		Entry e = throttled.get(n);
+		if (e != null) {
+			e.pending = true;
+			return true;
+		} else {
+			e = new Entry();
+			throttled.put(n, e);
+			schedule(name, interval, e);
+			return false;
+		}
+	}
+
+	/** Schedule the end of a throttle interval */
+	private void schedule(final Name name, final int interval,
+		final Entry e)
+	{
+		addJob(new Job(interval) {
+			public void perform() {
+				release(name, interval, e);
+			}
+		});
+	}
+
+	/** Release a throttled name at the end of an interval */
+	private void release(Name name, int interval, Entry e) {
+		boolean pending;
+		synchronized (this) {
+			String n = name.toString();
+			// Entry may have been cancelled
+			if (throttled.get(n) != e)
+				return;
+			pending = e.pending;
+			if (pending) {
+				e.pending = false;
+				schedule(name, interval, e);
+			} else
+				throttled.remove(n);
+		}
+		if (pending)
+			sendLatest(name);
+	}
+
+	/** Cancel all throttled attributes of a removed object.
+	 * @param name Object name. */
+	public synchronized void cancel(Name name) {
+		String p = name.toString() + "/";
+		Iterator<String> it = throttled.keySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().startsWith(p))
+				it.remove();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import us.mn.state.dot.sonar.User;
+
+/**
+ * A privilege cache contains privilege check decisions for each user.
+ */
+class PrivilegeCache {
+
+	/** Maximum number of cached decisions for one user */
+	static private final int MAX_ENTRIES = 4096;
+
+	/** Mapping of users to cached decisions.  This is replaced (never
+	 * cleared) on invalidation, so that a decision which was checked
+	 * before invalidation will not be put into the new cache. */
+	private volatile ConcurrentHashMap<User, ConcurrentHashMap<String,
+		Boolean>> users = createMap();
+
+	/** Create a new user mapping */
+	static private ConcurrentHashMap<User, ConcurrentHashMap<String,
+		Boolean>> createMap()
+	{
+		return new ConcurrentHashMap<User, ConcurrentHashMap<String,
+			Boolean>>();
+	}
+
+	/** Get the cached decisions for a user.
+	 * @param u User to check.
+	 * @return Mapping of keys to decisions. */
+	public ConcurrentHashMap<String, Boolean> lookup(User u) {
+		ConcurrentHashMap<User, ConcurrentHashMap<String, Boolean>> m =
+			users;
+		ConcurrentHashMap<String, Boolean> d = m.get(u);
+		if (d == null) {
+			d = new ConcurrentHashMap<String, Boolean>();
+			ConcurrentHashMap<String, Boolean> od =
+				m.putIfAbsent(u, d);
+			if (od != null)
+				d = od;
+		}
+		return d;
+	}
+
+	/** Put a decision into the cache.
+	 * @param d Cached decisions for a user (from lookup).
+	 * @param k Key of decision.
+	 * @param v Decision value. */
+	public void put(ConcurrentHashMap<String, Boolean> d, String k,
+		boolean v)
+	{
+		if (d.size() >= MAX_ENTRIES)
+			d.clear();
+		d.put(k, v);
+	}
+
+	/** Invalidate all cached decisions */
+	public void clear() {
+		users = createMap();
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import us.mn.state.dot.sonar.Capability;
+import us.mn.state.dot.sonar.Namespace;
+import us.mn.state.dot.sonar.Privilege;
+import us.mn.state.dot.sonar.SonarObject;
+
+/**
+ * A privilege index maps capabilities and type names to privileges.  It is
+ * rebuilt from the namespace on the first lookup after invalidation.
+ */
+class PrivilegeIndex {
+
+	/** Empty list of privileges */
+	static private final List<Privilege> NONE = Collections.emptyList();
+
+	/** Make an index key for a type name */
+	static private String key(String t, boolean write) {
+		return write ? ("w:" + t) : ("r:" + t);
+	}
+
+	/** Namespace containing privileges */
+	private final Namespace namespace;
+
+	/** Mapping of capabilities to keyed privilege lists (null if
+	 * invalid).  The mapping is replaced (never modified) on rebuild. */
+	private volatile HashMap<Capability, HashMap<String, List<Privilege>>>
+		index;
+
+	/** Serial number of invalidations */
+	private volatile int serial;
+
+	/** Create a new privilege index */
+	public PrivilegeIndex(Namespace ns) {
+		namespace = ns;
+	}
+
+	/** Lookup privileges for a capability and type.
+	 * @param c Capability to check.
+	 * @param t Type name.
+	 * @param write Lookup write privileges (or read).
+	 * @return List of privileges; must not be modified. */
+	public List<Privilege> lookup(Capability c, String t, boolean write) {
+		HashMap<Capability, HashMap<String, List<Privilege>>> idx =
+			index;
+		if (idx == null)
+			idx = rebuild();
+		HashMap<String, List<Privilege>> types = idx.get(c);
+		if (types != null) {
+			List<Privilege> privs = types.get(key(t, write));
+			if (privs != null)
+				return privs;
+		}
+		return NONE;
+	}
+
+	/** Rebuild the index from all privileges in the namespace */
+	private HashMap<Capability, HashMap<String, List<Privilege>>>
+		rebuild()
+	{
+		int s = serial;
+		HashMap<Capability, HashMap<String, ArrayList<Privilege>>> m =
+			new HashMap<Capability, HashMap<String,
+			ArrayList<Privilege>>>();
+		Iterator<SonarObject> it = namespace.iterator(
+			Privilege.SONAR_TYPE);
+		while (it.hasNext()) {
+			SonarObject so = it.next();
+			if (so instanceof Privilege)
+				add(m, (Privilege) so);
+		}
+		HashMap<Capability, HashMap<String, List<Privilege>>> idx =
+			freeze(m);
+		synchronized (this) {
+			// Don't install if invalidated during rebuild
+			if (s == serial)
+				index = idx;
+		}
+		return idx;
+	}
+
+	/** Add a privilege to a mapping */
+	private void add(HashMap<Capability, HashMap<String,
+		ArrayList<Privilege>>> m, Privilege p)
+	{
+		Capability c = p.getCapability();
+		String t = p.getTypeN();
+		if (c == null || t == null)
+			return;
+		HashMap<String, ArrayList<Privilege>> types = m.get(c);
+		if (types == null) {
+			types = new HashMap<String, ArrayList<Privilege>>();
+			m.put(c, types);
+		}
+		String k = key(t, p.getWrite());
+		ArrayList<Privilege> privs = types.get(k);
+		if (privs == null) {
+			privs = new ArrayList<Privilege>();
+			types.put(k, privs);
+		}
+		privs.add(p);
+	}
+
+	/** Freeze a mapping, so it can be shared without locking */
+	private HashMap<Capability, HashMap<String, List<Privilege>>> freeze(
+		HashMap<Capability, HashMap<String, ArrayList<Privilege>>> m)
+	{
+		HashMap<Capability, HashMap<String, List<Privilege>>> idx =
+			new HashMap<Capability, HashMap<String,
+			List<Privilege>>>();
+		for (Capability c: m.keySet()) {
+			HashMap<String, ArrayList<Privilege>> types = m.get(c);
+			HashMap<String, List<Privilege>> ft =
+				new HashMap<String, List<Privilege>>();
+			for (String k: types.keySet()) {
+				ft.put(k, Collections.unmodifiableList(
+					types.get(k)));
+			}
+			idx.put(c, ft);
+		}
+		return idx;
+	}
+
+	/** Invalidate the index */
+	public synchronized void clear() {
+		serial++;
+		index = null;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector loop performs all data transfers for a subset of client
+ * connections.  Each loop has its own selector and thread.
+ *
+ * @author Douglas Lau
+ */
+final class SelectorLoop {
+
+	/** Task processor */
+	private final TaskProcessor processor;
+
+	/** Selector for non-blocking I/O */
+	private final Selector selector;
+
+	/** Queue of accepted channels waiting to be registered */
+	private final ConcurrentLinkedQueue<SocketChannel> pending =
+		new ConcurrentLinkedQueue<SocketChannel>();
+
+	/** Thread to run select loop */
+	private final Thread thread;
+
+	/** Create a new selector loop */
+	SelectorLoop(ThreadGroup g, String name, TaskProcessor tp)
+		throws IOException
+	{
+		processor = tp;
+		selector = Selector.open();
+		thread = new Thread(g, name) {
+			@Override public void run() {
+				doRun();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Add a newly accepted channel to the loop.
+	 * This may only be called on the acceptor thread. */
+	void addChannel(SocketChannel sc) {
+		pending.add(sc);
+		selector.wakeup();
+	}
+
+	/** Selector loop to perfrom socket I/O */
+	private void doRun() {
+		while (true)
+			doSelect();
+	}
+
+	/** Select and perform I/O on ready channels */
+	private void doSelect() {
+		try {
+			_doSelect();
+		}
+		catch (Exception e) {
+			System.err.println("SONAR: selector error " +
+				e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/** Select and perform I/O on ready channels */
+	private void _doSelect() throws IOException {
+		selector.select();
+		registerPending();
+		Set<SelectionKey> readySet = selector.selectedKeys();
+		for (SelectionKey skey: readySet)
+			serviceClient(skey);
+		readySet.clear();
+	}
+
+	/** Register all pending channels with the selector.  This must
+	 * happen on the loop thread, since registering blocks while another
+	 * thread is waiting in select. */
+	private void registerPending() {
+		SocketChannel sc = pending.poll();
+		while (sc != null) {
+			register(sc);
+			sc = pending.poll();
+		}
+	}
+
+	/** Register one channel and schedule the client connection */
+	private void register(SocketChannel sc) {
+		try {
+			SelectionKey skey = sc.register(selector, 0);
+			processor.scheduleConnect(skey, sc);
+		}
+		catch (IOException e) {
+			System.err.println("SONAR: register error " +
+				e.getMessage());
+			try {
+				sc.close();
+			}
+			catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/** Do any pending read/write on a client connection */
+	private void serviceClient(SelectionKey skey) {
+		ConnectionImpl c = processor.lookupClient(skey);
+		if (null == c) {
+			handleDisconnect(skey, null, "No connection");
+			return;
+		}
+		try {
+			if (skey.isWritable())
+				c.doWrite();
+			if (skey.isReadable())
+				c.doRead();
+		}
+		catch (CancelledKeyException e) {
+			handleDisconnect(skey, c, "Key cancelled");
+		}
+		catch (EOFException e) {
+			handleDisconnect(skey, c, null);
+			/* Let the task processor perform the disconnect */
+			Thread.yield();
+		}
+		catch (IOException e) {
+			handleDisconnect(skey, c, "I/O error " +e.getMessage());
+		}
+	}
+
+	/** Handle a disconnect */
+	private void handleDisconnect(SelectionKey skey, ConnectionImpl c,
+		String msg)
+	{
+		try {
+			skey.channel().close();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			skey.cancel();
+		}
+		if (c != null)
+			processor.scheduleDisconnect(c, msg);
+		else
+			processor.scheduleDisconnect(skey);
+	}
+}
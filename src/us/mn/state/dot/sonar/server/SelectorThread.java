@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2018  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,7 +14,6 @@
  */
 package us.mn.state.dot.sonar.server;
 
-import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -26,13 +25,15 @@ import java.nio.channels.SocketChannel;
 import java.util.Set;
 
 /**
- * The selector thread processes all data transfers with client connections.
+ * The selector thread accepts new client connections.  Each connection is
+ * handed off to one selector loop, which processes all data transfers for
+ * that connection.
  *
  * @author Douglas Lau
  */
 public final class SelectorThread {
 
-	/** Thread group for selector thread */
+	/** Thread group for selector threads */
 	static private final ThreadGroup GROUP = new ThreadGroup("SONAR");
 
 	/** Create and configure a server socket channel */
@@ -47,21 +48,38 @@ public final class SelectorThread {
 		return c;
 	}
 
-	/** Task processor */
-	private final TaskProcessor processor;
-
-	/** Selector for non-blocking I/O */
+	/** Selector for accepting connections */
 	private final Selector selector;
 
 	/** Socket channel to listen for new client connections */
 	private final ServerSocketChannel channel;
 
-	/** Thread to run select loop */
+	/** Selector loops to perform client I/O */
+	private final SelectorLoop[] loops;
+
+	/** Index of next loop to receive a connection */
+	private int next_loop = 0;
+
+	/** Thread to run accept loop */
 	private final Thread thread;
 
-	/** Create a new selector thread */
+	/** Create a new selector thread with one selector loop */
 	public SelectorThread(TaskProcessor tp, int port) throws IOException {
-		processor = tp;
+		this(tp, port, 1);
+	}
+
+	/** Create a new selector thread.
+	 * @param tp Task processor.
+	 * @param port Port to listen for client connections.
+	 * @param n_loops Number of selector loops to perform I/O. */
+	public SelectorThread(TaskProcessor tp, int port, int n_loops)
+		throws IOException
+	{
+		loops = new SelectorLoop[Math.max(1, n_loops)];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new SelectorLoop(GROUP, "selector_" + i,
+				tp);
+		}
 		selector = Selector.open();
 		channel = createChannel(port);
 		channel.register(selector, SelectionKey.OP_ACCEPT);
@@ -79,13 +97,13 @@ public final class SelectorThread {
 		thread.join();
 	}
 
-	/** Selector loop to perfrom socket I/O */
+	/** Selector loop to accept connections */
 	private void doRun() {
 		while (true)
 			doSelect();
 	}
 
-	/** Select and perform I/O on ready channels */
+	/** Select and accept new connections */
 	private void doSelect() {
 		try {
 			_doSelect();
@@ -97,87 +115,45 @@ public final class SelectorThread {
 		}
 	}
 
-	/** Select and perform I/O on ready channels */
+	/** Select and accept new connections */
 	private void _doSelect() throws IOException {
 		selector.select();
 		Set<SelectionKey> readySet = selector.selectedKeys();
-		for (SelectionKey skey: readySet) {
-			if (checkAccept(skey))
-				continue;
-			serviceClient(skey);
-		}
+		for (SelectionKey skey: readySet)
+			checkAccept(skey);
 		readySet.clear();
 	}
 
 	/** Check if a new client is connecting */
-	private boolean checkAccept(SelectionKey skey) {
+	private void checkAccept(SelectionKey skey) {
 		try {
 			if (skey.isAcceptable())
 				doAccept();
-			else
-				return false;
 		}
 		catch (CancelledKeyException e) {
-			handleDisconnect(skey, null, e.getMessage());
+			System.err.println("SONAR: accept key cancelled " +
+				e.getMessage());
 		}
 		catch (IOException e) {
 			System.err.println("SONAR: selector I/O error " +
 				e.getMessage());
 			e.printStackTrace();
 		}
-		return true;
 	}
 
 	/** Accept a new client connection */
 	private void doAccept() throws IOException {
 		SocketChannel sc = channel.accept();
-		sc.configureBlocking(false);
-		SelectionKey skey = sc.register(selector, 0);
-		processor.scheduleConnect(skey, sc);
-	}
-
-	/** Do any pending read/write on a client connection */
-	private void serviceClient(SelectionKey skey) {
-		ConnectionImpl c = processor.lookupClient(skey);
-		if (null == c) {
-			handleDisconnect(skey, null, "No connection");
-			return;
-		}
-		try {
-			if (skey.isWritable())
-				c.doWrite();
-			if (skey.isReadable())
-				c.doRead();
-		}
-		catch (CancelledKeyException e) {
-			handleDisconnect(skey, c, "Key cancelled");
-		}
-		catch (EOFException e) {
-			handleDisconnect(skey, c, null);
-			/* Let the task processor perform the disconnect */
-			Thread.yield();
-		}
-		catch (IOException e) {
-			handleDisconnect(skey, c, "I/O error " +e.getMessage());
+		if (sc != null) {
+			sc.configureBlocking(false);
+			nextLoop().addChannel(sc);
 		}
 	}
 
-	/** Handle a disconnect */
-	private void handleDisconnect(SelectionKey skey, ConnectionImpl c,
-		String msg)
-	{
-		try {
-			skey.channel().close();
-		}
-		catch (IOException e) {
-			e.printStackTrace();
-		}
-		finally {
-			skey.cancel();
-		}
-		if (c != null)
-			processor.scheduleDisconnect(c, msg);
-		else
-			processor.scheduleDisconnect(skey);
+	/** Get the next selector loop (round-robin) */
+	private SelectorLoop nextLoop() {
+		SelectorLoop l = loops[next_loop];
+		next_loop = (next_loop + 1) % loops.length;
+		return l;
 	}
 }
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -39,8 +39,10 @@ public final class Server {
 		AccessMonitor am) throws IOException, ConfigurationError
 	{
 		int port = Props.getIntProp(props, "sonar.port");
+		int n_loops = Props.getIntProp(props, "sonar.selector.threads",
+			1);
 		processor = new TaskProcessor(n, props, am);
-		thread = new SelectorThread(processor, port);
+		thread = new SelectorThread(processor, port, n_loops);
 	}
 
 	/** Add an authentication provider */
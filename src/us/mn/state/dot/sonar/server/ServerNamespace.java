@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import us.mn.state.dot.sonar.Capability;
 import us.mn.state.dot.sonar.EmptyIterator;
 import us.mn.state.dot.sonar.GroupChecker;
 import us.mn.state.dot.sonar.Message;
@@ -25,6 +27,8 @@ import us.mn.state.dot.sonar.MessageEncoder;
 import us.mn.state.dot.sonar.Name;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.sonar.NamespaceError;
+import us.mn.state.dot.sonar.Privilege;
+import us.mn.state.dot.sonar.Role;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.sonar.SonarObject;
 import us.mn.state.dot.sonar.User;
@@ -44,10 +48,42 @@ public class ServerNamespace extends Namespace {
 		}
 	};
 
+	/** Check if a type affects privilege checks */
+	static private boolean isPrivilegeType(String t) {
+		return Privilege.SONAR_TYPE.equals(t)
+		    || Capability.SONAR_TYPE.equals(t)
+		    || Role.SONAR_TYPE.equals(t)
+		    || User.SONAR_TYPE.equals(t);
+	}
+
 	/** All SONAR types are stored in the root of the namespace */
 	private final HashMap<String, TypeNode> root =
 		new HashMap<String, TypeNode>();
 
+	/** Cache of read privilege decisions (keyed by type name) */
+	private final PrivilegeCache read_cache = new PrivilegeCache();
+
+	/** Cache of write privilege decisions (keyed by name) */
+	private final PrivilegeCache write_cache = new PrivilegeCache();
+
+	/** Index of privileges by capability and type */
+	private final PrivilegeIndex priv_index = new PrivilegeIndex(this);
+
+	/** Invalidate all cached privilege decisions.  This is done
+	 * automatically when privilege, capability, role or user objects are
+	 * changed through the namespace. */
+	public void invalidatePrivileges() {
+		priv_index.clear();
+		read_cache.clear();
+		write_cache.clear();
+	}
+
+	/** Invalidate cached privilege decisions if a type is changed */
+	private void typeChanged(String t) {
+		if (isPrivilegeType(t))
+			invalidatePrivileges();
+	}
+
 	/** Register a new type in the namespace */
 	private TypeNode registerType(SonarObject o) {
 		return registerType(o.getTypeName(), o.getClass());
@@ -78,13 +114,17 @@ public class ServerNamespace extends Namespace {
 			return t;
 	}
 
-	/** Set the value of an attribute.
+	/** Set the value of an attribute of an object in the namespace.
 	 * @param name Attribute name in SONAR namespace.
-	 * @param v New attribute value.
-	 * @return phantom object if one was created; null otherwise */
-	SonarObject setAttribute(Name name, String[] v) throws SonarException {
+	 * @param v New attribute value. */
+	void setAttribute(Name name, String[] v) throws SonarException {
 		TypeNode t = getTypeNode(name);
-		return t.setValue(name, v);
+		try {
+			t.setValue(name, v);
+		}
+		finally {
+			typeChanged(t.name);
+		}
 	}
 
 	/** Set the value of an attribute on a phantom object.
@@ -110,6 +150,13 @@ public class ServerNamespace extends Namespace {
 		}
 	}
 
+	/** Get the minimum notify interval for an attribute name.
+	 * @return Interval in milliseconds (0 for no limit). */
+	int getNotifyInterval(Name name) {
+		TypeNode t = _getTypeNode(name.getTypePart());
+		return (t != null) ? t.getNotifyInterval() : 0;
+	}
+
 	/** Get the value of an attribute */
 	String[] getAttribute(Name name) throws SonarException {
 		TypeNode t = getTypeNode(name);
@@ -120,10 +167,36 @@ public class ServerNamespace extends Namespace {
 			throw NamespaceError.nameInvalid(name);
 	}
 
+	/** Encode the value of an attribute for sharing with the binary
+	 * protocol.
+	 * @return Shared encoding, or null if the attribute has no codec. */
+	byte[] encodeAttribute(Name name) throws SonarException, IOException {
+		TypeNode t = getTypeNode(name);
+		SonarObject o = t.lookupObject(name.getObjectPart());
+		if (o != null)
+			return t.encodeShared(o, name.getAttributePart());
+		else
+			throw NamespaceError.nameInvalid(name);
+	}
+
+	/** Invalidate cached values of an object after an attribute has
+	 * changed.
+	 * @param name Attribute name in SONAR namespace. */
+	void invalidateObject(Name name) {
+		TypeNode t = _getTypeNode(name.getTypePart());
+		if (t != null)
+			t.invalidate(name.getObjectPart());
+	}
+
 	/** Remove an object from the namespace */
 	void removeObject(SonarObject o) throws SonarException {
 		TypeNode n = getTypeNode(o);
-		n.removeObject(o);
+		try {
+			n.removeObject(o);
+		}
+		finally {
+			typeChanged(n.name);
+		}
 	}
 
 	/** Lookup the object with the specified name */
@@ -152,6 +225,11 @@ public class ServerNamespace extends Namespace {
 		enc.encode(Message.TYPE);
 	}
 
+	/** Create a cursor to stream all objects of the named type */
+	EnumerationCursor createCursor(Name name) throws NamespaceError {
+		return new EnumerationCursor(getTypeNode(name));
+	}
+
 	/** Enumerate all attributes of the named object */
 	void enumerateObject(MessageEncoder enc, SonarObject o)
 		throws SonarException, IOException
@@ -216,11 +294,13 @@ public class ServerNamespace extends Namespace {
 	/** Add an object into the namespace without storing */
 	public void addObject(SonarObject o) throws NamespaceError {
 		getTypeNode(o).addObject(o);
+		typeChanged(o.getTypeName());
 	}
 
 	/** Store an object in the namespace */
 	public void storeObject(SonarObject o) throws SonarException {
 		getTypeNode(o).storeObject(o);
+		typeChanged(o.getTypeName());
 	}
 
 	/** Create a new object */
@@ -272,6 +352,55 @@ public class ServerNamespace extends Namespace {
 			return 0;
 	}
 
+	/** Check if a user has read privileges.
+	 * @param name Name to check.
+	 * @param u User to check.
+	 * @return true If user has read privileges. */
+	@Override
+	public boolean canRead(Name name, User u) {
+		// Read privileges depend only on the type
+		String k = name.getTypePart();
+		ConcurrentHashMap<String, Boolean> d = read_cache.lookup(u);
+		Boolean c = d.get(k);
+		if (c != null)
+			return c;
+		boolean r = super.canRead(name, u);
+		read_cache.put(d, k, r);
+		return r;
+	}
+
+	/** Check if a user has write privileges.
+	 * @param name Name to check.
+	 * @param u User to check.
+	 * @return true If user has write privileges. */
+	@Override
+	public boolean canWrite(Name name, User u) {
+		// Group privileges can change with any object, so
+		// only cache decisions for types with no group checker
+		if (getGroupChecker(name) != NO_GROUP)
+			return super.canWrite(name, u);
+		String k = name.toString();
+		ConcurrentHashMap<String, Boolean> d = write_cache.lookup(u);
+		Boolean c = d.get(k);
+		if (c != null)
+			return c;
+		boolean r = super.canWrite(name, u);
+		write_cache.put(d, k, r);
+		return r;
+	}
+
+	/** Lookup all privileges for a capability and type.
+	 * @param c Capability to check.
+	 * @param t Type name.
+	 * @param write Lookup write privileges (or read).
+	 * @return Privileges which may match. */
+	@Override
+	protected Iterable<Privilege> lookupPrivileges(Capability c, String t,
+		boolean write)
+	{
+		return priv_index.lookup(c, t, write);
+	}
+
 	/** Check if a user has read privileges.  This can be overridden by a
 	 * subclass to check a whitelist of addresses.
 	 * @param name Name to check.
@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2018  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -25,22 +25,31 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 import us.mn.state.dot.sched.DebugLog;
 import us.mn.state.dot.sched.ExceptionHandler;
+import us.mn.state.dot.sched.Job;
+import us.mn.state.dot.sched.Scheduler;
 import us.mn.state.dot.sched.Work;
 import us.mn.state.dot.sched.Worker;
 import static us.mn.state.dot.sched.TimeSteward.currentTimeMillis;
 import us.mn.state.dot.sonar.ConfigurationError;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageEncoder;
 import us.mn.state.dot.sonar.Name;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.sonar.NamespaceError;
+import us.mn.state.dot.sonar.Props;
 import us.mn.state.dot.sonar.Security;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.sonar.SonarObject;
+import us.mn.state.dot.sonar.SSLState;
 import us.mn.state.dot.sonar.User;
 
 /**
@@ -122,19 +131,8 @@ public class TaskProcessor {
 		return enabled.toArray(new String[0]);
 	}
 
-	/** SONAR namespace being served */
-	private final ServerNamespace namespace;
-
-	/** Access monitor */
-	private final AccessMonitor access_monitor;
-
-	/** SSL context */
-	private final SSLContext context;
-
-	/** Task processor worker */
-	private final Worker processor = new Worker("sonar_proc",
- 		new ExceptionHandler()
-	{
+	/** Exception handler for task processor workers */
+	static private final ExceptionHandler HANDLER = new ExceptionHandler() {
 		public boolean handle(Exception e) {
 			if (e instanceof CancelledKeyException)
 				DEBUG.log("Key already cancelled");
@@ -146,7 +144,58 @@ public class TaskProcessor {
 			}
 			return true;
 		}
-	});
+	};
+
+	/** Create workers.
+	 * @param name Base name of worker threads.
+	 * @param n_threads Number of worker threads. */
+	static private Worker[] createWorkers(String name, int n_threads) {
+		if (n_threads <= 1)
+			return new Worker[] { new Worker(name, HANDLER) };
+		Worker[] w = new Worker[n_threads];
+		for (int i = 0; i < n_threads; i++)
+			w[i] = new Worker(name + "_" + i, HANDLER);
+		return w;
+	}
+
+	/** SONAR namespace being served */
+	private final ServerNamespace namespace;
+
+	/** Access monitor */
+	private final AccessMonitor access_monitor;
+
+	/** SSL context */
+	private final SSLContext context;
+
+	/** Task processor workers.  All work for one connection is performed
+	 * on the same worker, so messages are processed in order.  Work for
+	 * one object is also performed on the same worker. */
+	private final Worker[] workers;
+
+	/** Handshake workers, for delegated SSL tasks */
+	private final Worker[] handshakers;
+
+	/** Index of next handshake worker */
+	private final AtomicInteger next_handshaker = new AtomicInteger();
+
+	/** Executor for delegated SSL tasks.  Tasks are assigned to the
+	 * handshake workers in round-robin order, so handshake crypto does
+	 * not block message processing. */
+	private final Executor handshake_executor = new Executor() {
+		public void execute(final Runnable r) {
+			nextHandshaker().addWork(new Work() {
+				public void perform() {
+					r.run();
+				}
+			});
+		}
+	};
+
+	/** Get the next handshake worker */
+	private Worker nextHandshaker() {
+		int i = next_handshaker.getAndIncrement();
+		return handshakers[(i & Integer.MAX_VALUE) % handshakers.length];
+	}
 
 	/** Authenticator for user credentials */
 	private final Authenticator authenticator;
@@ -159,14 +208,37 @@ public class TaskProcessor {
 	private List<ConnectionImpl> conn_list =
 		new ArrayList<ConnectionImpl>();
 
+	/** Index of connections watching names */
+	private final WatchIndex<ConnectionImpl> watchers =
+		new WatchIndex<ConnectionImpl>(new ConnectionImpl[0]);
+
+	/** Timer for delayed tasks */
+	private final Scheduler timer = new Scheduler("sonar_timer", HANDLER);
+
+	/** Throttle for attribute notifications */
+	private final NotifyThrottle throttle = new NotifyThrottle() {
+		protected void addJob(Job job) {
+			timer.addJob(job);
+		}
+		protected void sendLatest(Name name) {
+			scheduleNotifyAttribute(name);
+		}
+	};
+
+	/** Deadline for flushing notifications (microseconds) */
+	private final int flush_usec;
+
+	/** Count of read and flush tasks coalesced with a queued task */
+	private final AtomicLong coalesced = new AtomicLong();
+
 	/** File to write session list */
 	private final String session_file;
 
 	/** Regex to match cipher suites */
 	private final String cipher_suites;
 
-	/** User for current message processing */
-	private String proc_user = null;
+	/** User for current message processing (on each worker thread) */
+	private final ThreadLocal<String> proc_user = new ThreadLocal<String>();
 
 	/** Create a task processor */
 	public TaskProcessor(ServerNamespace n, Properties props,
@@ -184,6 +256,83 @@ public class TaskProcessor {
 		}
 		session_file = props.getProperty("sonar.session.file");
 		cipher_suites = props.getProperty("sonar.cipher.suites");
+		workers = createWorkers("sonar_proc", Props.getIntProp(props,
+			"sonar.task.threads", 1));
+		handshakers = createWorkers("sonar_handshake",
+			Props.getIntProp(props, "sonar.handshake.threads", 1));
+		flush_usec = Props.getIntProp(props, "sonar.flush.usec", 0);
+		SSLState.configurePools(props);
+	}
+
+	/** Get the worker index for a hash code.
+	 * @param h Hash code.
+	 * @param n Number of workers. */
+	static int workerIndex(int h, int n) {
+		return (h & Integer.MAX_VALUE) % n;
+	}
+
+	/** Get the worker index for an object.  Work for an object name
+	 * must use the same index, so that attribute changes are notified
+	 * in order.
+	 * @param o Object.
+	 * @param n Number of workers. */
+	static int workerIndex(SonarObject o, int n) {
+		return workerIndex(o.getName().hashCode(), n);
+	}
+
+	/** Get the worker index for an object name.
+	 * @param name Object or attribute name.
+	 * @param n Number of workers. */
+	static int workerIndex(Name name, int n) {
+		return workerIndex(name.getObjectPart().hashCode(), n);
+	}
+
+	/** Get the worker for a connection */
+	private Worker getWorker(ConnectionImpl c) {
+		return workers[workerIndex(System.identityHashCode(c),
+			workers.length)];
+	}
+
+	/** Get the worker for an object */
+	private Worker getWorker(SonarObject o) {
+		return workers[workerIndex(o, workers.length)];
+	}
+
+	/** Add work for a connection */
+	private void addWork(ConnectionImpl c, Work w) {
+		getWorker(c).addWork(w);
+	}
+
+	/** Add work for an object */
+	private void addWork(SonarObject o, Work w) {
+		getWorker(o).addWork(w);
+	}
+
+	/** Add work for an object (by name) */
+	private void addWork(Name name, Work w) {
+		workers[workerIndex(name, workers.length)].addWork(w);
+	}
+
+	/** Add work which is not associated with a connection or object */
+	private void addWork(Work w) {
+		workers[0].addWork(w);
+	}
+
+	/** Check if the current thread is a task processor worker */
+	private boolean isWorkerThread() {
+		for (Worker w: workers) {
+			if (w.isCurrentThread())
+				return true;
+		}
+		return false;
+	}
+
+	/** Get the total number of queued tasks */
+	public int getQueueSize() {
+		int n = 0;
+		for (Worker w: workers)
+			n += w.size();
+		return n;
 	}
 
 	/** Add an authentication provider */
@@ -196,9 +345,19 @@ public class TaskProcessor {
 		return namespace;
 	}
 
+	/** Get the executor for delegated SSL tasks */
+	Executor getHandshakeExecutor() {
+		return handshake_executor;
+	}
+
+	/** Get the index of connections watching names */
+	WatchIndex<ConnectionImpl> getWatchIndex() {
+		return watchers;
+	}
+
 	/** Get user for current message processing */
 	public String getProcUser() {
-		return proc_user;
+		return proc_user.get();
 	}
 
 	/** Get a list of active connections */
@@ -218,7 +377,7 @@ public class TaskProcessor {
 	public void scheduleConnect(final SelectionKey skey,
 		final SocketChannel sc)
 	{
-		processor.addWork(new TaskWork("Connect") {
+		addWork(new TaskWork("Connect") {
 			protected void doPerform() throws Exception {
 				try {
 					doConnect(skey, sc);
@@ -251,7 +410,7 @@ public class TaskProcessor {
 
 	/** Schedule a disconnect on a selection key */
 	public void scheduleDisconnect(final SelectionKey skey) {
-		processor.addWork(new TaskWork("Disconnect key") {
+		addWork(new TaskWork("Disconnect key") {
 			protected void doPerform() {
 				disconnect(skey);
 			}
@@ -262,8 +421,10 @@ public class TaskProcessor {
 	public void scheduleDisconnect(final ConnectionImpl c,
 		final String msg)
 	{
-		processor.addWork(new TaskWork("Disconnect", c) {
+		addWork(c, new TaskWork("Disconnect", c) {
 			protected void doPerform() {
+				if (!c.isConnected())
+					return;
 				if (msg != null)
 					c.disconnect(msg);
 				else
@@ -289,7 +450,7 @@ public class TaskProcessor {
 	}
 
 	/** Update list of valid session IDs */
-	private void updateSessionList() {
+	private synchronized void updateSessionList() {
 		if (session_file == null)
 			return;
 		try {
@@ -311,26 +472,57 @@ public class TaskProcessor {
 		}
 	}
 
+	/** Get the count of read and flush tasks which were coalesced with
+	 * a task already queued for the same connection */
+	public long getCoalescedTasks() {
+		return coalesced.get();
+	}
+
 	/** Process messages on one connection */
 	void processMessages(final ConnectionImpl c) {
-		processor.addWork(new TaskWork("Processing msgs", c) {
+		if (!c.queueRead()) {
+			coalesced.incrementAndGet();
+			return;
+		}
+		addWork(c, new TaskWork("Processing msgs", c) {
 			protected void doPerform() {
-				proc_user = c.getUserName();
-				c.processMessages();
-				proc_user = null;
+				proc_user.set(c.getUserName());
+				try {
+					c.processMessages();
+				}
+				finally {
+					proc_user.remove();
+				}
 			}
 		});
 	}
 
 	/** Flush outgoing data for one connection */
 	void flush(final ConnectionImpl c) {
-		processor.addWork(new TaskWork("Flush", c) {
+		if (!c.queueFlush()) {
+			coalesced.incrementAndGet();
+			return;
+		}
+		addWork(c, new TaskWork("Flush", c) {
 			protected void doPerform() {
 				c.flush();
 			}
 		});
 	}
 
+	/** Schedule a flush of batched notifications to a connection */
+	void scheduleFlush(final ConnectionImpl c) {
+		if (flush_usec > 0) {
+			int ms = (flush_usec + 999) / 1000;
+			timer.addJob(new Job(ms) {
+				public void perform() {
+					flush(c);
+				}
+			});
+		} else
+			flush(c);
+	}
+
 	/** Authenticate a user connection */
 	void authenticate(ConnectionImpl c, String name, char[] password) {
 		if (DEBUG.isOpen())
@@ -345,7 +537,7 @@ public class TaskProcessor {
 
 	/** Finish a LOGIN */
 	void finishLogin(final ConnectionImpl c, final UserImpl u) {
-		processor.addWork(new TaskWork("Finish LOGIN", c) {
+		addWork(c, new TaskWork("Finish LOGIN", c) {
 			protected void doPerform() {
 				access_monitor.authenticate(c.getName(),
 					u.getName());
@@ -357,7 +549,7 @@ public class TaskProcessor {
 
 	/** Fail a LOGIN */
 	void failLogin(final ConnectionImpl c, final String name) {
-		processor.addWork(new TaskWork("Fail LOGIN", c) {
+		addWork(c, new TaskWork("Fail LOGIN", c) {
 			protected void doPerform() {
 				access_monitor.failAuthentication(c.getName(),
 					name);
@@ -379,7 +571,7 @@ public class TaskProcessor {
 	{
 		// Need to copy password, since authenticator will clear it
 		final String pwd = new String(pwd_new);
-		processor.addWork(new TaskWork("Finish PASSWORD", c) {
+		addWork(c, new TaskWork("Finish PASSWORD", c) {
 			protected void doPerform() {
 				try {
 					u.doSetPassword(pwd);
@@ -393,7 +585,7 @@ public class TaskProcessor {
 
 	/** Fail a PASSWORD */
 	void failPassword(final ConnectionImpl c, final String msg) {
-		processor.addWork(new TaskWork("Fail PASSWORD", c) {
+		addWork(c, new TaskWork("Fail PASSWORD", c) {
 			protected void doPerform() {
 				c.failPassword(msg);
 			}
@@ -430,32 +622,90 @@ public class TaskProcessor {
 
 	/** Notify all connections watching a name of an object add. */
 	private void notifyObject(SonarObject o) {
-		Name name = new Name(o);
-		for (ConnectionImpl c: getConnectionList())
-			c.notifyObject(name, o);
+		Name name = Name.create(o);
+		for (ConnectionImpl c: watchers.lookup(name))
+			c.notifyObject(o);
 	}
 
-	/** Notify all connections watching a name of an attribute change. */
+	/** Notify all connections watching a name of an attribute change.
+	 * If the type has a notify interval, changes may be coalesced. */
 	void notifyAttribute(Name name, String[] params) {
 		if (DEBUG_TASK.isOpen()) {
 			debugTask("Notify attribute", name.toString() + " (" +
-				processor.size() + ")");
+				getQueueSize() + ")");
 		}
 		if (namespace.isGettable(name)) {
-			for (ConnectionImpl c: getConnectionList())
-				c.notifyAttribute(name, params);
+			int iv = namespace.getNotifyInterval(name);
+			if (iv <= 0 || !throttle.defer(name, iv))
+				sendAttribute(name, params);
+		}
+	}
+
+	/** Schedule a throttled attribute notification.  The current value
+	 * is sent, since changes may have been coalesced. */
+	void scheduleNotifyAttribute(final Name name) {
+		addWork(name, new TaskWork("Notify attribute") {
+			protected void doPerform() {
+				doNotifyAttribute(name);
+			}
+		});
+	}
+
+	/** Perform a throttled attribute notification */
+	private void doNotifyAttribute(Name name) {
+		try {
+			sendAttribute(name, namespace.getAttribute(name));
+		}
+		catch (SonarException e) {
+			// Object was removed
+		}
+	}
+
+	/** Send an attribute change to all connections watching a name */
+	private void sendAttribute(Name name, String[] params) {
+		// Message is encoded (once per protocol) for first reader
+		byte[][] msgs = new byte[MessageEncoder.PROTOCOL_BINARY + 1][];
+		for (ConnectionImpl c: watchers.lookup(name)) {
+			if (c.canRead(name)) {
+				int v = c.getProtocol();
+				if (msgs[v] == null)
+					msgs[v] = encodeShared(v, name, params);
+				c.notifyAttribute(name, msgs[v]);
+			}
+		}
+	}
+
+	/** Encode an attribute change for sharing with one protocol
+	 * version.  With the binary protocol, the value is put with its
+	 * exact type if possible. */
+	private byte[] encodeShared(int v, Name name, String[] params) {
+		if (v == MessageEncoder.PROTOCOL_BINARY) {
+			try {
+				byte[] shared = namespace.encodeAttribute(name);
+				if (shared != null)
+					return shared;
+			}
+			catch (SonarException e) {
+				// Object was removed; use params
+			}
+			catch (IOException e) {
+				// Use params
+			}
 		}
+		return MessageEncoder.encodeShared(v, Message.ATTRIBUTE,
+			name.toString(), params);
 	}
 
 	/** Notify all connections watching a name of an object remove. */
 	void notifyRemove(Name name) {
-		for (ConnectionImpl c: getConnectionList())
+		throttle.cancel(name);
+		for (ConnectionImpl c: watchers.lookup(name))
 			c.notifyRemove(name);
 	}
 
 	/** Schedule an object to be added to the server's namespace */
 	public void scheduleAddObject(final SonarObject o) {
-		processor.addWork(new TaskWork("Add object") {
+		addWork(o, new TaskWork("Add object") {
 			protected void doPerform() throws NamespaceError {
 				doAddObject(o);
 			}
@@ -472,8 +722,8 @@ public class TaskProcessor {
 	/** Create (synchronously) an object in the server's namespace */
 	public void storeObject(final SonarObject o) throws SonarException {
 		// Calling waitForCompletion will hang if we're
-		// running on the task processor thread.
-		if (processor.isCurrentThread()) {
+		// running on a task processor thread.
+		if (isWorkerThread()) {
 			doStoreObject(o);
 			return;
 		}
@@ -489,7 +739,7 @@ public class TaskProcessor {
 				}
 			}
 		};
-		processor.addWork(w);
+		addWork(o, w);
 		try {
 			// Only wait for 30 seconds before giving up
 			w.waitForCompletion(30000);
@@ -511,7 +761,7 @@ public class TaskProcessor {
 
 	/** Remove the specified object from the server's namespace */
 	public void scheduleRemoveObject(final SonarObject o) {
-		processor.addWork(new TaskWork("Remove object") {
+		addWork(o, new TaskWork("Remove object") {
 			protected void doPerform() throws SonarException {
 				doRemoveObject(o);
 			}
@@ -521,23 +771,100 @@ public class TaskProcessor {
 	/** Perform a remove object task. */
 	private void doRemoveObject(SonarObject o) throws SonarException {
 		debugTask("Removing object", o.getName());
-		notifyRemove(new Name(o));
+		notifyRemove(Name.create(o));
 		namespace.removeObject(o);
 	}
 
 	/** Set the specified attribute in the server's namespace */
 	public void scheduleSetAttribute(SonarObject o, String a) {
-		final Name name = new Name(o, a);
-		processor.addWork(new TaskWork("Set attribute") {
+		final Name name = Name.create(o, a);
+		namespace.invalidateObject(name);
+		addWork(o, new TaskWork("Set attribute") {
 			protected void doPerform() throws SonarException {
 				doSetAttribute(name);
 			}
 		});
 	}
 
+	/** Schedule an attribute set from a client.  The client's
+	 * connection worker may not be the object's worker, so the set is
+	 * performed on the object's worker, in order with server-side sets
+	 * and removes of the same object.  Errors are shown to the client.
+	 * @param c Client connection.
+	 * @param name Attribute name.
+	 * @param v New attribute value. */
+	void scheduleSetAttribute(final ConnectionImpl c, final Name name,
+		final String[] v)
+	{
+		addWork(name, new TaskWork("Client set attribute", c) {
+			protected void doPerform() {
+				proc_user.set(c.getUserName());
+				try {
+					namespace.setAttribute(name, v);
+					doSetAttribute(name);
+				}
+				catch (SonarException e) {
+					showError(c, e.getMessage());
+				}
+				finally {
+					proc_user.remove();
+				}
+			}
+		});
+	}
+
+	/** Schedule an object remove from a client.  This is performed on
+	 * the object's worker, after any attribute sets which are queued.
+	 * Errors are shown to the client.
+	 * @param c Client connection.
+	 * @param name Object name. */
+	void scheduleRemoveObject(final ConnectionImpl c, final Name name) {
+		addWork(name, new TaskWork("Client remove object", c) {
+			protected void doPerform() {
+				proc_user.set(c.getUserName());
+				try {
+					doRemoveObject(name);
+				}
+				catch (SonarException e) {
+					showError(c, e.getMessage());
+				}
+				finally {
+					proc_user.remove();
+				}
+			}
+		});
+	}
+
+	/** Perform a remove object task from a client */
+	private void doRemoveObject(Name name) throws SonarException {
+		SonarObject obj = namespace.lookupObject(name);
+		if (obj != null) {
+			namespace.removeObject(obj);
+			notifyRemove(name);
+		} else
+			throw NamespaceError.nameInvalid(name);
+	}
+
+	/** Show an error message to a client (on its connection worker) */
+	private void showError(final ConnectionImpl c, final String msg) {
+		addWork(c, new TaskWork("Show error", c) {
+			protected void doPerform() {
+				c.showError(msg);
+			}
+		});
+	}
+
 	/** Perform a "set attribute" task. */
 	private void doSetAttribute(Name name) throws SonarException {
-		String[] v = namespace.getAttribute(name);
-		notifyAttribute(name, v);
+		namespace.invalidateObject(name);
+		if (namespace.isGettable(name)) {
+			try {
+				String[] v = namespace.getAttribute(name);
+				notifyAttribute(name, v);
+			}
+			catch (NamespaceError e) {
+				// Object was removed
+			}
+		}
 	}
 }
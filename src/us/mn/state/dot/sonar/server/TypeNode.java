@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2006-2017  Minnesota Department of Transportation
+ * Copyright (C) 2006-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import us.mn.state.dot.sonar.GroupChecker;
 import us.mn.state.dot.sonar.Message;
 import us.mn.state.dot.sonar.MessageEncoder;
@@ -54,11 +56,88 @@ public class TypeNode {
 	/** An attribute dispatcher can set and get attributes on objects */
 	private final AttributeDispatcher dispatcher;
 
+	/** Gettable attributes (in enumeration order) */
+	private final String[] attributes;
+
+	/** Cache of marshalled attribute values (null if not caching) */
+	private volatile ValueCache cache;
+
+	/** Minimum interval between notifications of one attribute (ms) */
+	private volatile int notify_interval = 0;
+
+	/** Lock for attribute values.  Tasks can be performed on multiple
+	 * threads, so setters (and storing or destroying objects) of one
+	 * type are serialized, and getters can't run at the same time as a
+	 * setter. */
+	private final ReentrantReadWriteLock lock =
+		new ReentrantReadWriteLock();
+
+	/** Lock for getting attribute values */
+	private final Lock read_lock = lock.readLock();
+
+	/** Lock for setting attribute values */
+	private final Lock write_lock = lock.writeLock();
+
 	/** Create a namespace type node */
 	public TypeNode(Namespace ns, String n, Class c, GroupChecker gc) {
 		name = n;
 		group_chk = gc;
 		dispatcher = new AttributeDispatcher(c, ns);
+		attributes = dispatcher.getGettableAttributes();
+	}
+
+	/** Set the minimum interval between notifications of one attribute.
+	 * Changes within the interval are coalesced, and only the latest
+	 * value is sent when it expires.
+	 * @param ms Interval in milliseconds (0 for no limit). */
+	public void setNotifyInterval(int ms) {
+		notify_interval = ms;
+	}
+
+	/** Get the minimum interval between notifications (ms) */
+	public int getNotifyInterval() {
+		return notify_interval;
+	}
+
+	/** Enable or disable caching of marshalled attribute values and
+	 * encoded records for enumeration.  This should only be enabled if
+	 * all attribute changes are made through the namespace, or scheduled
+	 * with TaskProcessor.scheduleSetAttribute.
+	 * @param c True to enable caching. */
+	public void setCaching(boolean c) {
+		cache = c ? new ValueCache(attributes.length) : null;
+	}
+
+	/** Get the count of value cache hits */
+	public long getCacheHits() {
+		ValueCache vc = cache;
+		return (vc != null) ? vc.getHits() : 0;
+	}
+
+	/** Get the count of value cache misses */
+	public long getCacheMisses() {
+		ValueCache vc = cache;
+		return (vc != null) ? vc.getMisses() : 0;
+	}
+
+	/** Get the count of record cache hits */
+	public long getRecordHits() {
+		ValueCache vc = cache;
+		return (vc != null) ? vc.getRecordHits() : 0;
+	}
+
+	/** Get the count of record cache misses */
+	public long getRecordMisses() {
+		ValueCache vc = cache;
+		return (vc != null) ? vc.getRecordMisses() : 0;
+	}
+
+	/** Invalidate cached values of an object.
+	 * @param n Object name. */
+	public void invalidate(String n) {
+		ValueCache vc = cache;
+		if (vc != null)
+			vc.invalidate(n);
 	}
 
 	/** Create a new object in the type node */
@@ -74,7 +153,14 @@ public class TypeNode {
 		synchronized (children) {
 			if (children.containsKey(name))
 				throw NamespaceError.nameExists(name);
-			dispatcher.storeObject(o);
+			write_lock.lock();
+			try {
+				dispatcher.storeObject(o);
+			}
+			finally {
+				write_lock.unlock();
+			}
+			invalidate(name);
 			children.put(name, o);
 		}
 	}
@@ -85,8 +171,8 @@ public class TypeNode {
 		synchronized (children) {
 			if (children.containsKey(name))
 				throw NamespaceError.nameExists(name);
-			else
-				children.put(name, o);
+			invalidate(name);
+			children.put(name, o);
 		}
 	}
 
@@ -99,6 +185,7 @@ public class TypeNode {
 				throw NamespaceError.nameUnknown(n);
 			if (obj != o)
 				throw NamespaceError.nameExists(n);
+			write_lock.lock();
 			try {
 				dispatcher.destroyObject(o);
 			}
@@ -106,6 +193,10 @@ public class TypeNode {
 				children.put(n, o);
 				throw e;
 			}
+			finally {
+				write_lock.unlock();
+			}
+			invalidate(n);
 		}
 	}
 
@@ -123,57 +214,140 @@ public class TypeNode {
 	public String[] getValue(SonarObject o, String a)
 		throws SonarException
 	{
-		return dispatcher.getValue(o, a);
+		read_lock.lock();
+		try {
+			return dispatcher.getValue(o, a);
+		}
+		finally {
+			read_lock.unlock();
+		}
+	}
+
+	/** Encode the value of an attribute for sharing with the binary
+	 * protocol.
+	 * @return Shared encoding, or null if the attribute has no codec. */
+	public byte[] encodeShared(SonarObject o, String a)
+		throws SonarException, IOException
+	{
+		read_lock.lock();
+		try {
+			return dispatcher.encodeShared(o, a);
+		}
+		finally {
+			read_lock.unlock();
+		}
 	}
 
-	/** Enumerate all attributes of the named object */
+	/** Enumerate all attributes of the named object.  Records are only
+	 * cached for the text protocol, since binary names depend on each
+	 * connection's name dictionary.  With the binary protocol, values
+	 * are put into the encoder with their exact types. */
 	public void enumerateObject(MessageEncoder enc, SonarObject o)
 		throws SonarException, IOException
 	{
 		assert(o.getTypeName() == name);
+		ValueCache vc = cache;
+		read_lock.lock();
+		try {
+			if (vc == null)
+				encodeObject(enc, o, null, null);
+			else if (enc.getVersion() ==
+			         MessageEncoder.PROTOCOL_TEXT)
+				enumerateCached(enc, o, vc);
+			else
+				encodeObject(enc, o, null, null);
+		}
+		finally {
+			read_lock.unlock();
+		}
+	}
+
+	/** Enumerate an object using the cached record */
+	private void enumerateCached(MessageEncoder enc, SonarObject o,
+		ValueCache vc) throws SonarException, IOException
+	{
+		ValueCache.Entry e = vc.lookup(o.getName());
+		byte[] rec = vc.getRecord(e);
+		if (rec == null) {
+			MessageEncoder re = new MessageEncoder(0);
+			encodeObject(re, o, vc, e);
+			rec = re.toByteArray();
+			e.putRecord(rec);
+		}
+		enc.encode(rec);
+	}
+
+	/** Encode all attributes of an object.  Must be called with the
+	 * read lock held.
+	 * @param enc Message encoder.
+	 * @param o Object to encode.
+	 * @param vc Value cache (may be null).
+	 * @param e Cache entry (null if vc is null). */
+	private void encodeObject(MessageEncoder enc, SonarObject o,
+		ValueCache vc, ValueCache.Entry e)
+		throws SonarException, IOException
+	{
 		boolean first = true;
-		for (String a: dispatcher.getGettableAttributes()) {
-			String[] v = getValue(o, a);
+		for (int i = 0; i < attributes.length; i++) {
+			String a = attributes[i];
+			String n = a;
 			if (first) {
-				a = new Name(o, a).toString();
+				n = Name.create(o, a).toString();
 				first = false;
 			}
-			enc.encode(Message.ATTRIBUTE, a, v);
+			if (vc != null) {
+				enc.encode(Message.ATTRIBUTE, n,
+					getCachedValue(vc, e, o, i));
+			} else
+				dispatcher.encodeValue(enc, o, a, n);
 		}
 		if (first)
 			enc.encode(Message.TYPE, name);
 		enc.encode(Message.OBJECT, o.getName());
 	}
 
+	/** Get a cached attribute value (from an attribute index) */
+	private String[] getCachedValue(ValueCache vc, ValueCache.Entry e,
+		SonarObject o, int i) throws SonarException
+	{
+		String[] v = vc.getValue(e, i);
+		if (v == null) {
+			v = dispatcher.getValue(o, attributes[i]);
+			e.putValue(i, v);
+		}
+		return v;
+	}
+
 	/** Enumerate all the objects of the type node */
 	public void enumerateObjects(MessageEncoder enc) throws SonarException,
 		IOException
 	{
-		// We must synchronize here to ensure that no objects are
-		// added or removed while enumerating
-		synchronized (children) {
-			for (SonarObject o: children.values())
-				enumerateObject(enc, o);
-		}
+		for (SonarObject o: snapshot())
+			enumerateObject(enc, o);
 	}
 
-	/** Set the value of an attribute.
+	/** Get a snapshot of all objects of the type.  The snapshot is
+	 * taken without locking, so objects added or removed at the same
+	 * time may or may not be included. */
+	public SonarObject[] snapshot() {
+		return children.values().toArray(new SonarObject[0]);
+	}
+
+	/** Set the value of an attribute of an object in the type node.
 	 * @param name Attribute name in SONAR namespace.
-	 * @param v New attribute value.
-	 * @return phantom object if one was created; null otherwise */
-	public SonarObject setValue(Name name, String[] v)
-		throws SonarException
-	{
+	 * @param v New attribute value. */
+	public void setValue(Name name, String[] v) throws SonarException {
 		String oname = name.getObjectPart();
-		String aname = name.getAttributePart();
 		SonarObject o = children.get(oname);
-		if (o != null) {
-			dispatcher.setValue(o, aname, v);
-			return null;
-		} else {
-			o = dispatcher.createObject(oname);
-			setField(o, aname, v);
-			return o;
+		if (o == null)
+			throw NamespaceError.nameUnknown(name.getObjectName());
+		write_lock.lock();
+		try {
+			dispatcher.setValue(o, name.getAttributePart(), v);
+		}
+		finally {
+			invalidate(oname);
+			write_lock.unlock();
 		}
 	}
 
@@ -181,7 +355,13 @@ public class TypeNode {
 	public void setField(SonarObject o, String a, String[] v)
 		throws SonarException
 	{
-		dispatcher.setField(o, a, v);
+		write_lock.lock();
+		try {
+			dispatcher.setField(o, a, v);
+		}
+		finally {
+			write_lock.unlock();
+		}
 	}
 
 	/** Get an iterator of all objects of the type */
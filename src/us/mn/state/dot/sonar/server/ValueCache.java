@@ -0,0 +1,142 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A value cache contains marshalled attribute values and encoded
+ * enumeration records for all objects of one type.  On invalidation, the
+ * entry for an object is removed (never cleared), so a value which was read
+ * before invalidation will not be put into the cache.
+ */
+class ValueCache {
+
+	/** Cached values for one object */
+	static public final class Entry {
+
+		/** Marshalled values, indexed by attribute */
+		private final AtomicReferenceArray<String[]> values;
+
+		/** Encoded enumeration record */
+		private volatile byte[] record;
+
+		/** Create a new cache entry */
+		private Entry(int n_attrs) {
+			values = new AtomicReferenceArray<String[]>(n_attrs);
+		}
+
+		/** Put a marshalled value */
+		public void putValue(int i, String[] v) {
+			values.set(i, v);
+		}
+
+		/** Put an encoded record */
+		public void putRecord(byte[] r) {
+			record = r;
+		}
+	}
+
+	/** Number of attributes for each object */
+	private final int n_attrs;
+
+	/** Mapping of object names to cache entries */
+	private final ConcurrentHashMap<String, Entry> entries =
+		new ConcurrentHashMap<String, Entry>();
+
+	/** Count of value cache hits */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Count of value cache misses */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Count of record cache hits */
+	private final AtomicLong rec_hits = new AtomicLong();
+
+	/** Count of record cache misses */
+	private final AtomicLong rec_misses = new AtomicLong();
+
+	/** Create a new value cache */
+	public ValueCache(int n) {
+		n_attrs = n;
+	}
+
+	/** Lookup the cache entry for an object.  This must be called
+	 * before reading any values which may be put into the entry.
+	 * @param n Object name.
+	 * @return Cache entry. */
+	public Entry lookup(String n) {
+		Entry e = entries.get(n);
+		if (e == null) {
+			e = new Entry(n_attrs);
+			Entry oe = entries.putIfAbsent(n, e);
+			if (oe != null)
+				e = oe;
+		}
+		return e;
+	}
+
+	/** Get a cached value.
+	 * @param e Cache entry from lookup.
+	 * @param i Attribute index.
+	 * @return Cached value, or null on a cache miss. */
+	public String[] getValue(Entry e, int i) {
+		String[] r = e.values.get(i);
+		if (r != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		return r;
+	}
+
+	/** Get a cached record.
+	 * @param e Cache entry from lookup.
+	 * @return Cached record, or null on a cache miss. */
+	public byte[] getRecord(Entry e) {
+		byte[] r = e.record;
+		if (r != null)
+			rec_hits.incrementAndGet();
+		else
+			rec_misses.incrementAndGet();
+		return r;
+	}
+
+	/** Invalidate all cached values for an object */
+	public void invalidate(String n) {
+		entries.remove(n);
+	}
+
+	/** Get the count of value cache hits */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/** Get the count of value cache misses */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/** Get the count of record cache hits */
+	public long getRecordHits() {
+		return rec_hits.get();
+	}
+
+	/** Get the count of record cache misses */
+	public long getRecordMisses() {
+		return rec_misses.get();
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import us.mn.state.dot.sonar.Name;
+
+/**
+ * A watch index maps watched names to the connections watching them.  Type
+ * and object names are positive entries, and attribute names (with no
+ * object) are negative entries.  This allows notifications to be sent only
+ * to interested connections, without checking every connection.
+ */
+class WatchIndex<C> {
+
+	/** Empty array of connections */
+	private final C[] none;
+
+	/** Mapping of watch names to connections.  Arrays are replaced (never
+	 * modified), so they can be read without synchronization. */
+	private final ConcurrentHashMap<String, C[]> watchers =
+		new ConcurrentHashMap<String, C[]>();
+
+	/** Create a new watch index.
+	 * @param n Empty array of connections. */
+	public WatchIndex(C[] n) {
+		none = n;
+	}
+
+	/** Start watching a name.  The caller must synchronize on the
+	 * watching set.
+	 * @param watching Set of names the connection is watching.
+	 * @param name Name to watch.
+	 * @param c Watching connection. */
+	public void startWatching(Set<String> watching, Name name, C c) {
+		String n = name.toString();
+		if (watching.remove(n))
+			remove(n, c);
+		if (ConnectionImpl.isWatchPositive(name)) {
+			watching.add(n);
+			add(n, c);
+		}
+	}
+
+	/** Stop watching a name.  The caller must synchronize on the
+	 * watching set.
+	 * @param watching Set of names the connection is watching.
+	 * @param name Name to ignore.
+	 * @param c Watching connection. */
+	public void stopWatching(Set<String> watching, Name name, C c) {
+		String n = name.toString();
+		if (watching.remove(n))
+			remove(n, c);
+		if (ConnectionImpl.isWatchNegative(name)) {
+			watching.add(n);
+			add(n, c);
+		}
+	}
+
+	/** Stop watching all names.  The caller must synchronize on the
+	 * watching set.
+	 * @param watching Set of names the connection is watching.
+	 * @param c Watching connection. */
+	public void clearWatching(Set<String> watching, C c) {
+		for (String n: watching)
+			remove(n, c);
+		watching.clear();
+	}
+
+	/** Add a connection watching a name */
+	private synchronized void add(String n, C c) {
+		C[] cs = lookup(n);
+		for (C w: cs) {
+			if (w == c)
+				return;
+		}
+		C[] ncs = Arrays.copyOf(cs, cs.length + 1);
+		ncs[cs.length] = c;
+		watchers.put(n, ncs);
+	}
+
+	/** Remove a connection watching a name */
+	private synchronized void remove(String n, C c) {
+		C[] cs = lookup(n);
+		for (int i = 0; i < cs.length; i++) {
+			if (cs[i] == c) {
+				if (cs.length > 1) {
+					C[] ncs = Arrays.copyOf(cs,
+						cs.length - 1);
+					System.arraycopy(cs, i + 1, ncs, i,
+						ncs.length - i);
+					watchers.put(n, ncs);
+				} else
+					watchers.remove(n);
+				return;
+			}
+		}
+	}
+
+	/** Lookup connections with an entry for a name */
+	private C[] lookup(String n) {
+		C[] cs = watchers.get(n);
+		return (cs != null) ? cs : none;
+	}
+
+	/** Lookup all connections watching an object or attribute name.
+	 * An object watch is highest priority (positive), an attribute watch
+	 * is middle priority (negative) and a type watch is lowest priority
+	 * (positive).
+	 * @param name Object or attribute name.
+	 * @return Array of watching connections; must not be modified. */
+	public C[] lookup(Name name) {
+		C[] typ = lookup(name.getTypePart());
+		C[] obj = lookup(name.getObjectName());
+		C[] neg = name.isAttribute()
+		        ? lookup(name.getAttributeName())
+		        : none;
+		if (obj.length == 0 && neg.length == 0)
+			return typ;
+		if (typ.length == 0)
+			return obj;
+		return merge(typ, obj, neg);
+	}
+
+	/** Merge type and object watches, excluding negative watches */
+	private C[] merge(C[] typ, C[] obj, C[] neg) {
+		HashSet<C> ex = new HashSet<C>();
+		ArrayList<C> cs = new ArrayList<C>(typ.length + obj.length);
+		for (C c: obj) {
+			ex.add(c);
+			cs.add(c);
+		}
+		for (C c: neg)
+			ex.add(c);
+		for (C c: typ) {
+			if (!ex.contains(c))
+				cs.add(c);
+		}
+		return cs.toArray(none);
+	}
+}
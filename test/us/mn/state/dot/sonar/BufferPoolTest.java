@@ -0,0 +1,88 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar;
+
+import java.nio.ByteBuffer;
+import junit.framework.TestCase;
+
+/**
+ * Buffer pool tests
+ */
+public class BufferPoolTest extends TestCase {
+
+	public BufferPoolTest(String name) {
+		super(name);
+	}
+
+	public void testTake() {
+		BufferPool pool = new BufferPool(64, 2);
+		ByteBuffer b = pool.take();
+		assertTrue(b.isDirect());
+		assertEquals(64, b.capacity());
+		assertEquals(0, b.position());
+		assertEquals(64, b.remaining());
+		assertEquals(64, pool.take(10).capacity());
+		assertEquals(0, pool.getIdle());
+	}
+
+	public void testReuse() {
+		BufferPool pool = new BufferPool(64, 2);
+		ByteBuffer b = pool.take();
+		b.put((byte) 1);
+		pool.give(b);
+		assertEquals(1, pool.getIdle());
+		ByteBuffer c = pool.take();
+		assertTrue(b == c);
+		assertEquals(0, c.position());
+		assertEquals(0, pool.getIdle());
+	}
+
+	public void testMaxIdle() {
+		BufferPool pool = new BufferPool(64, 2);
+		ByteBuffer[] bufs = new ByteBuffer[4];
+		for (int i = 0; i < bufs.length; i++)
+			bufs[i] = pool.take();
+		for (ByteBuffer b: bufs)
+			pool.give(b);
+		assertEquals(2, pool.getIdle());
+		pool.setMaxIdle(3);
+		pool.give(pool.take(16));
+		pool.give(ByteBuffer.allocateDirect(64));
+		pool.give(ByteBuffer.allocateDirect(64));
+		assertEquals(3, pool.getIdle());
+	}
+
+	public void testOversize() {
+		BufferPool pool = new BufferPool(64, 2);
+		ByteBuffer b = pool.take(100);
+		assertEquals(100, b.capacity());
+		pool.give(b);
+		assertEquals(0, pool.getIdle());
+		pool.give(ByteBuffer.allocateDirect(32));
+		assertEquals(0, pool.getIdle());
+	}
+
+	public void testHeap() {
+		BufferPool pool = new BufferPool(64, 2, false);
+		ByteBuffer b = pool.take();
+		assertFalse(b.isDirect());
+		assertEquals(64, b.array().length);
+		pool.give(ByteBuffer.allocateDirect(64));
+		assertEquals(0, pool.getIdle());
+		pool.give(b);
+		assertEquals(1, pool.getIdle());
+		assertTrue(b == pool.take());
+	}
+}
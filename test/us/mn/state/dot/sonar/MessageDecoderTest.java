@@ -0,0 +1,230 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Message decoder tests
+ */
+public class MessageDecoderTest extends TestCase {
+
+	public MessageDecoderTest(String name) {
+		super(name);
+	}
+
+	private void put(ByteBuffer buf, String s) throws Exception {
+		buf.put(s.getBytes("UTF-8"));
+	}
+
+	/** Check that a binary frame is rejected */
+	private void checkInvalid(String msg, byte[] b) throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		MessageDecoder dec = new MessageDecoder(buf);
+		dec.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		buf.put(b);
+		try {
+			dec.decode();
+			fail();
+		}
+		catch (IOException e) {
+			assertEquals(msg, e.getMessage());
+		}
+	}
+
+	public void testDecode() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		MessageDecoder dec = new MessageDecoder(buf);
+		assertNull(dec.decode());
+		put(buf, "a\u001ftest/obj/attr\u001f\u001fx\u001eo\u001f");
+		List<String> p = dec.decode();
+		assertEquals(Arrays.asList("a", "test/obj/attr", "", "x"), p);
+		assertNull(dec.decode());
+		put(buf, "test/obj\u001e\u001e");
+		assertEquals(Arrays.asList("o", "test/obj"), dec.decode());
+		assertEquals(Arrays.asList(""), dec.decode());
+		assertNull(dec.decode());
+	}
+
+	public void testCode() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		MessageDecoder dec = new MessageDecoder(buf);
+		put(buf, "q\u001eab\u001fx\u001e\u001fy\u001et\u001f\u001e");
+		assertEquals(Arrays.asList("q"), dec.decode());
+		assertEquals('q', dec.getCode());
+		assertEquals(Arrays.asList("ab", "x"), dec.decode());
+		assertEquals(Message.NULL_REF.code, dec.getCode());
+		assertEquals(Arrays.asList("", "y"), dec.decode());
+		assertEquals(Message.NULL_REF.code, dec.getCode());
+		assertEquals(Arrays.asList("t", ""), dec.decode());
+		assertEquals('t', dec.getCode());
+	}
+
+	public void testSplitChar() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		MessageDecoder dec = new MessageDecoder(buf);
+		byte[] b = "s\u001f\u20ac\u00e9\u001e".getBytes("UTF-8");
+		buf.put(b, 0, 3);
+		assertNull(dec.decode());
+		buf.put(b, 3, b.length - 3);
+		assertEquals(Arrays.asList("s", "\u20ac\u00e9"), dec.decode());
+	}
+
+	public void testLarge() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(16);
+		MessageDecoder dec = new MessageDecoder(buf);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			put(buf, "0123456789");
+			sb.append("0123456789");
+			assertNull(dec.decode());
+		}
+		put(buf, "\u001ex\u001e");
+		assertEquals(Arrays.asList(sb.toString()), dec.decode());
+		assertEquals(Arrays.asList("x"), dec.decode());
+	}
+
+	public void testPooled() throws Exception {
+		BufferPool pool = new BufferPool(64, 2, false);
+		MessageDecoder dec = new MessageDecoder(pool);
+		assertNull(dec.decode());
+		byte[] b = "s\u001fabc\u001ex\u001e".getBytes("UTF-8");
+		dec.receive(ByteBuffer.wrap(b, 0, 4));
+		assertNull(dec.decode());
+		// Scratch buffer is held while a message is incomplete
+		assertEquals(0, pool.getIdle());
+		dec.receive(ByteBuffer.wrap(b, 4, b.length - 4));
+		assertEquals(Arrays.asList("s", "abc"), dec.decode());
+		assertEquals(0, pool.getIdle());
+		assertEquals(Arrays.asList("x"), dec.decode());
+		assertEquals(1, pool.getIdle());
+		// Messages larger than pooled buffers are not pooled
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			sb.append("0123456789");
+			dec.receive(ByteBuffer.wrap("0123456789".getBytes(
+				"UTF-8")));
+			assertNull(dec.decode());
+		}
+		dec.receive(ByteBuffer.wrap(new byte[] { 0x1e }));
+		assertEquals(Arrays.asList(sb.toString()), dec.decode());
+		assertEquals(1, pool.getIdle());
+	}
+
+	public void testBinary() throws Exception {
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		enc.beginMessage(Message.ATTRIBUTE, "test/obj/attr");
+		enc.putParam(0);
+		enc.putParam(-9876543210L);
+		enc.putParam("007");
+		enc.putParam(1.0E10);
+		enc.putParam(0.30000000000000004);
+		enc.putParam(0.1f);
+		enc.putParam(false);
+		enc.putParam((String) null);
+		enc.putParam("");
+		enc.putParam("1.2.3");
+		enc.putParam("\u20ac");
+		enc.endMessage();
+		byte[] b = enc.toByteArray();
+		ByteBuffer buf = ByteBuffer.allocate(128);
+		MessageDecoder dec = new MessageDecoder(buf);
+		dec.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		buf.put(b, 0, 10);
+		assertNull(dec.decode());
+		buf.put(b, 10, b.length - 10);
+		List<String> p = dec.decode();
+		assertEquals("a", p.get(0));
+		assertEquals("test/obj/attr", dec.getName());
+		// Decoded values match the text protocol
+		assertEquals(Arrays.asList("0", "-9876543210", "007",
+			"1.0E10", "0.30000000000000004", "0.1", "false",
+			"\u0000", "", "1.2.3", "\u20ac"),
+			p.subList(2, p.size()));
+		assertNull(dec.decode());
+		buf.put(MessageEncoder.encodeBytes(
+			MessageEncoder.PROTOCOL_BINARY, Message.TYPE, null,
+			null));
+		assertEquals(Arrays.asList("t"), dec.decode());
+	}
+
+	public void testInvalidString() throws Exception {
+		// Negative length (bit 63 set)
+		checkInvalid("Invalid string length", new byte[] {
+			12, 'a', 0, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1
+		});
+		// Length larger than an int
+		checkInvalid("Invalid string length", new byte[] {
+			8, 'a', 0, -127, -128, -128, -128, 16, 'x'
+		});
+		// Length past end of frame
+		checkInvalid("Invalid string length", new byte[] {
+			4, 'a', 0, 2, 'x'
+		});
+	}
+
+	public void testInvalidName() throws Exception {
+		// Negative name ID
+		checkInvalid("Invalid name ID", new byte[] {
+			13, 'o', 7, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1
+		});
+		// Name ID not in dictionary
+		checkInvalid("Invalid name ID", new byte[] { 4, 'o', 7, 1, 1 });
+		// Name ID too large
+		checkInvalid("Invalid name ID", new byte[] {
+			9, 'o', 7, 1, 0, -128, -128, 4, 1, 'x'
+		});
+		// Negative name part length
+		checkInvalid("Invalid string length", new byte[] {
+			15, 'o', 7, 1, 0, 0, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, 1
+		});
+	}
+
+	public void testNames() throws Exception {
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		MessageDecoder dec = new MessageDecoder(buf);
+		dec.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		buf.put(new byte[] {
+			17, 'a', 7, 3, 0, 1, 1, 'a', 0, 9, 1, 'b', 0, 0, 1, 'c',
+			1, 2,
+			11, 'a', 7, 3, 1, 9, 0, 0, 1, 'd', 1, 2,
+			4, 'o', 7, 1, 9
+		});
+		assertEquals(Arrays.asList("a", "", "1"), dec.decode());
+		assertEquals(3, dec.getNameParts());
+		assertEquals("a/b/c", dec.getName());
+		assertEquals(Arrays.asList("a", "", "1"), dec.decode());
+		assertEquals("b", dec.getNamePart(1));
+		assertEquals("a/b/d", dec.getName());
+		assertEquals(Arrays.asList("o", "b"), dec.decode());
+		assertEquals(1, dec.getNameParts());
+		assertEquals("b", dec.getName());
+		assertNull(dec.decode());
+		buf.put(new byte[] { 3, 'r', 7, 1, 3 });
+		try {
+			dec.decode();
+			fail();
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+}
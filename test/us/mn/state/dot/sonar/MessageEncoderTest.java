@@ -0,0 +1,183 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Message encoder tests
+ */
+public class MessageEncoderTest extends TestCase {
+
+	public MessageEncoderTest(String name) {
+		super(name);
+	}
+
+	/** Get the encoded bytes from an encoder */
+	private byte[] getBytes(MessageEncoder enc) throws Exception {
+		enc.flush();
+		ByteBuffer buf = enc.getBuffer();
+		return Arrays.copyOf(buf.array(), buf.position());
+	}
+
+	public void testEncode() throws Exception {
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.encode(Message.ATTRIBUTE, "test/obj/attr",
+			new String[] { "a\u001fb", "c\u001ed", "\u00e9" });
+		assertTrue(Arrays.equals(getBytes(enc),
+			"a\u001ftest/obj/attr\u001fa b\u001fc d\u001f\u00e9\u001e"
+			.getBytes("UTF-8")));
+	}
+
+	public void testEncodeBytes() throws Exception {
+		String[] params = new String[] { "1", "x\u001ey", "\u20ac" };
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.encode(Message.ATTRIBUTE, "test/obj/attr", params);
+		byte[] msg = MessageEncoder.encodeBytes(Message.ATTRIBUTE,
+			"test/obj/attr", params);
+		assertTrue(Arrays.equals(getBytes(enc), msg));
+		enc.encode(Message.REMOVE, "test/obj");
+		enc.encode(msg);
+		byte[] b = getBytes(enc);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(b,
+			b.length - msg.length, b.length), msg));
+	}
+
+	public void testEncodeUtf8() throws Exception {
+		String[] params = new String[] { "\u00e9\u0800\uffff",
+			"\ud83d\ude00", "x\ud800y", "\udc00" };
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.encode(Message.ATTRIBUTE, "test/obj/attr", params);
+		assertTrue(Arrays.equals(getBytes(enc),
+			("a\u001ftest/obj/attr\u001f\u00e9\u0800\uffff" +
+			 "\u001f\ud83d\ude00\u001fx?y\u001f?\u001e")
+			.getBytes("UTF-8")));
+	}
+
+	public void testPooled() throws Exception {
+		BufferPool pool = new BufferPool(64, 2, false);
+		MessageEncoder enc = new MessageEncoder(pool);
+		assertFalse(enc.hasData());
+		enc.encode(Message.REMOVE, "test/obj");
+		assertTrue(Arrays.equals(getBytes(enc),
+			"r\u001ftest/obj\u001e".getBytes("UTF-8")));
+		ByteBuffer buf = enc.getBuffer();
+		buf.flip();
+		buf.get(new byte[4]);
+		enc.compact();
+		// Buffer is held while it contains data
+		assertTrue(enc.hasData());
+		assertEquals(0, pool.getIdle());
+		buf = enc.getBuffer();
+		buf.flip();
+		buf.position(buf.limit());
+		enc.compact();
+		assertFalse(enc.hasData());
+		assertEquals(1, pool.getIdle());
+	}
+
+	public void testEncodeBinary() throws Exception {
+		// String parameters are not parsed as numbers
+		String[] params = new String[] { "12", "\u0000" };
+		byte[] msg = MessageEncoder.encodeBytes(
+			MessageEncoder.PROTOCOL_BINARY, Message.ATTRIBUTE,
+			"a/b/c", params);
+		assertTrue(Arrays.equals(msg, new byte[] {
+			13, 'a', 0, 5, 'a', '/', 'b', '/', 'c', 0, 2, '1', '2',
+			4
+		}));
+	}
+
+	/** Encode a message with one of each typed parameter */
+	private void putTyped(MessageEncoder enc) {
+		enc.beginMessage(Message.ATTRIBUTE, "x");
+		enc.putParam(12);
+		enc.putParam(Long.MIN_VALUE);
+		enc.putParam(1.5f);
+		enc.putParam(2.0);
+		enc.putParam(true);
+		enc.putParam((String) null);
+		enc.putParam("s");
+		enc.endMessage();
+	}
+
+	public void testEncodeTyped() throws Exception {
+		MessageEncoder enc = new MessageEncoder(0);
+		putTyped(enc);
+		assertTrue(Arrays.equals(getBytes(enc),
+			MessageEncoder.encodeBytes(Message.ATTRIBUTE, "x",
+			new String[] { "12", "-9223372036854775808", "1.5",
+			"2.0", "true", "\u0000", "s" })));
+		enc = new MessageEncoder(0);
+		enc.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		putTyped(enc);
+		byte x = (byte) MessageEncoder.namePartId("x");
+		assertTrue(Arrays.equals(getBytes(enc), new byte[] {
+			39, 'a', 7, 1, 0, x, 1, 'x', 1, 24,
+			1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1,
+			2, 0x3F, (byte) 0xC0, 0, 0,
+			3, 0x40, 0, 0, 0, 0, 0, 0, 0,
+			6, 4, 0, 1, 's'
+		}));
+	}
+
+	public void testAbortMessage() throws Exception {
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		enc.beginMessage(Message.ATTRIBUTE, "abort");
+		enc.putParam(1);
+		enc.abortMessage();
+		assertFalse(enc.hasData());
+		// Name was not defined by the aborted message
+		enc.beginMessage(Message.ATTRIBUTE, "abort");
+		enc.endMessage();
+		byte[] b = getBytes(enc);
+		assertEquals(0, b[4]);
+		assertEquals('a', b[7]);
+	}
+
+	public void testEncodeNames() throws Exception {
+		String[] params = new String[] { "1" };
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		enc.encode(Message.ATTRIBUTE, "a/b/c", params);
+		byte[] shared = MessageEncoder.encodeShared(
+			MessageEncoder.PROTOCOL_BINARY, Message.ATTRIBUTE,
+			"a/b/c", params);
+		enc.encodeShared(Message.ATTRIBUTE, "a/b/c", shared);
+		enc.encode(Message.OBJECT, "b");
+		// Name part IDs are shared by all encoders
+		byte a = (byte) MessageEncoder.namePartId("a");
+		byte b = (byte) MessageEncoder.namePartId("b");
+		byte c = (byte) MessageEncoder.namePartId("c");
+		assertTrue(Arrays.equals(getBytes(enc), new byte[] {
+			18, 'a', 7, 3, 0, a, 1, 'a', 0, b, 1, 'b', 0, c, 1, 'c',
+			0, 1, '1',
+			9, 'a', 7, 3, a, b, c, 0, 1, '1',
+			4, 'o', 7, 1, b
+		}));
+		// Another encoder defines parts again, with the same IDs
+		enc = new MessageEncoder(0);
+		enc.setVersion(MessageEncoder.PROTOCOL_BINARY);
+		enc.encode(Message.OBJECT, "b");
+		enc.encode(Message.OBJECT, "b");
+		assertTrue(Arrays.equals(getBytes(enc), new byte[] {
+			7, 'o', 7, 1, 0, b, 1, 'b',
+			4, 'o', 7, 1, b
+		}));
+	}
+}
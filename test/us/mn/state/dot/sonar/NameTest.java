@@ -1,6 +1,6 @@
 /*
  * SONAR -- Simple Object Notification And Replication
- * Copyright (C) 2009  Minnesota Department of Transportation
+ * Copyright (C) 2009-2026  Minnesota Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -45,4 +45,56 @@ public class NameTest extends TestCase {
 		assertTrue(n.getObjectPart().equals("aaa"));
 		assertTrue(n.getAttributePart().equals(""));
 	}
+
+	/** test splitting matches String.split */
+	public void testSplit() {
+		String[] paths = { "", "/", "t", "t/", "t/o", "t//a", "t/o/a",
+			"/o", "t/o/a/", "t//", "t/o/a/x" };
+		for (String p: paths) {
+			Name n = new Name(p);
+			String[] parts = (p.length() > 0)
+			               ? p.split("/")
+			               : new String[0];
+			assertEquals(parts.length == 0, n.isRoot());
+			assertEquals(parts.length == 1, n.isType());
+			assertEquals(parts.length == 2, n.isObject());
+			assertEquals(parts.length == 3, n.isAttribute());
+			if (parts.length > 1)
+				assertEquals(parts[1], n.getObjectPart());
+		}
+		assertEquals("t//a", new Name("t/o/a").getAttributeName());
+		assertEquals("t/o", new Name("t/o/a").getObjectName());
+		assertTrue(new Name("t", "", "").isType());
+	}
+
+	/** test cached names */
+	public void testCreate() {
+		TestObj o = new TestObjImpl("bbb");
+		Name n = Name.create(o, "notes");
+		assertSame(n, Name.create("testobj/bbb/notes"));
+		assertSame(n, Name.create("testobj", "bbb", "notes"));
+		assertTrue(n.isAttribute());
+		assertEquals("testobj/bbb", n.getObjectName());
+		assertSame(Name.create(o), Name.create("testobj/bbb"));
+		assertTrue(Name.create("t", "o/x").isAttribute());
+		assertSame(Name.create("testobj"), Name.create("testobj"));
+		// Paths not in canonical form keep their path
+		assertEquals("testobj/bbb/", Name.create("testobj/bbb/")
+			.toString());
+		assertEquals("t/o/a/x", Name.create("t/o/a/x").toString());
+	}
+
+	/** test that recently used names stay cached */
+	public void testCacheBounded() {
+		Name n = Name.create("t/keep/a");
+		Name old = Name.create("t/old/a");
+		for (int i = 0; i < 200000; i++) {
+			Name.create("t/o_" + i + "/a");
+			if (i % 1000 == 0)
+				assertSame(n, Name.create("t/keep/a"));
+		}
+		assertSame(n, Name.create("t/keep/a"));
+		// Names which are not used are evicted
+		assertFalse(old == Name.create("t/old/a"));
+	}
 }
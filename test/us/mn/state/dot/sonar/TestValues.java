@@ -0,0 +1,51 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar;
+
+/**
+ * A sonar test object interface with one attribute of each value type.
+ */
+public interface TestValues extends SonarObject {
+
+	String SONAR_TYPE = "testvalues";
+
+	short getSmall();
+
+	void setSmall(short s);
+
+	long getBig();
+
+	void setBig(long b);
+
+	float getRatio();
+
+	void setRatio(float r);
+
+	double getScale();
+
+	void setScale(double s);
+
+	boolean getActive();
+
+	void setActive(boolean a);
+
+	String getLabel();
+
+	void setLabel(String l);
+
+	TestObj getPeer();
+
+	void setPeer(TestObj p);
+}
@@ -0,0 +1,109 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar;
+
+/**
+ * A sonar test object with one attribute of each value type.
+ */
+public class TestValuesImpl implements TestValues {
+
+	public String getTypeName() {
+		return SONAR_TYPE;
+	}
+
+	protected final String name;
+
+	public TestValuesImpl(String n) {
+		name = n;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	protected short small;
+
+	public short getSmall() {
+		return small;
+	}
+
+	public void setSmall(short s) {
+		small = s;
+	}
+
+	protected long big;
+
+	public long getBig() {
+		return big;
+	}
+
+	public void setBig(long b) {
+		big = b;
+	}
+
+	protected float ratio;
+
+	public float getRatio() {
+		return ratio;
+	}
+
+	public void setRatio(float r) {
+		ratio = r;
+	}
+
+	protected double scale;
+
+	public double getScale() {
+		return scale;
+	}
+
+	public void setScale(double s) {
+		scale = s;
+	}
+
+	protected boolean active;
+
+	public boolean getActive() {
+		return active;
+	}
+
+	public void setActive(boolean a) {
+		active = a;
+	}
+
+	protected String label;
+
+	public String getLabel() {
+		return label;
+	}
+
+	public void setLabel(String l) {
+		label = l;
+	}
+
+	protected TestObj peer;
+
+	public TestObj getPeer() {
+		return peer;
+	}
+
+	public void setPeer(TestObj p) {
+		peer = p;
+	}
+
+	public void destroy() {
+		// nothing to do
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageDecoder;
+import us.mn.state.dot.sonar.MessageEncoder;
+
+/**
+ * Notify backlog tests
+ */
+public class NotifyBacklogTest extends TestCase {
+
+	static private final int BEHIND = 256;
+
+	public NotifyBacklogTest(String name) throws IOException {
+		super(name);
+		enc = new MessageEncoder(64);
+	}
+
+	private final NotifyBacklog backlog = new NotifyBacklog(BEHIND);
+	private final MessageEncoder enc;
+
+	/** Bytes "sent" to the network */
+	private final ByteBuffer net = ByteBuffer.allocate(1 << 20);
+
+	/** Create an entry like an object record */
+	private NotifyBacklog.Entry object(final String n) {
+		return new NotifyBacklog.Entry() {
+			protected void encode(MessageEncoder e)
+				throws IOException
+			{
+				e.encode(Message.OBJECT, n);
+				e.encode(Message.ATTRIBUTE, n + "/a",
+					new String[] { "0" });
+			}
+		};
+	}
+
+	private void attribute(String n, String v) throws Exception {
+		byte[] msg = MessageEncoder.encodeShared(
+			MessageEncoder.PROTOCOL_TEXT, Message.ATTRIBUTE, n,
+			new String[] { v });
+		backlog.add(enc, NotifyBacklog.attribute(n, msg));
+	}
+
+	/** Send all encoded data to the network */
+	private void send() {
+		ByteBuffer buf = enc.getBuffer();
+		buf.flip();
+		net.put(buf);
+		enc.compact();
+	}
+
+	/** Decode all messages sent to the network */
+	private List<String> decode() throws Exception {
+		ByteBuffer in = ByteBuffer.allocate(net.position());
+		net.flip();
+		in.put(net);
+		MessageDecoder dec = new MessageDecoder(in);
+		ArrayList<String> msgs = new ArrayList<String>();
+		for (List<String> p = dec.decode(); p != null;
+		     p = dec.decode())
+		{
+			StringBuilder sb = new StringBuilder();
+			for (String s: p) {
+				if (sb.length() > 0)
+					sb.append(' ');
+				sb.append(s);
+			}
+			msgs.add(sb.toString());
+		}
+		return msgs;
+	}
+
+	public void testNotBehind() throws Exception {
+		attribute("t/o/a", "1");
+		backlog.add(enc, NotifyBacklog.message(Message.REMOVE, "t/o"));
+		assertTrue(backlog.isEmpty());
+		send();
+		List<String> msgs = decode();
+		assertEquals(2, msgs.size());
+		assertEquals("a t/o/a 1", msgs.get(0));
+		assertEquals("r t/o", msgs.get(1));
+	}
+
+	public void testBounded() throws Exception {
+		for (int i = 0; !backlog.isBehind(enc); i++)
+			attribute("t/o/a", String.valueOf(i));
+		int behind = enc.getBuffer().position();
+		for (int i = 0; i < 1000; i++) {
+			attribute("t/o_" + (i % 10) + "/a", String.valueOf(i));
+			backlog.add(enc, object("t/x_" + i));
+			backlog.add(enc, NotifyBacklog.message(Message.REMOVE,
+				"t/x_" + i));
+			backlog.add(enc, NotifyBacklog.message(Message.SHOW,
+				"msg"));
+			assertEquals(behind, enc.getBuffer().position());
+		}
+		// Attribute notifications are conflated
+		assertEquals(10 + 3000, backlog.size());
+		for (int i = 0; !backlog.isEmpty(); i++) {
+			send();
+			backlog.drain(enc);
+			assertTrue(enc.getBuffer().position() < BEHIND + 64);
+			assertTrue(i < 1000);
+		}
+		send();
+		List<String> msgs = decode();
+		// Only the latest attribute values are sent, in order
+		int n = msgs.size();
+		assertEquals("a t/o_9/a 999", msgs.get(n - 5));
+		assertEquals("o t/x_999", msgs.get(n - 4));
+		assertEquals("a t/x_999/a 0", msgs.get(n - 3));
+		assertEquals("r t/x_999", msgs.get(n - 2));
+		assertEquals("s msg", msgs.get(n - 1));
+		assertTrue(msgs.contains("a t/o_0/a 990"));
+		assertFalse(msgs.contains("a t/o_0/a 980"));
+		assertTrue(msgs.contains("r t/x_0"));
+	}
+
+	public void testOrder() throws Exception {
+		for (int i = 0; !backlog.isBehind(enc); i++)
+			attribute("t/y/a", String.valueOf(i));
+		attribute("t/o/a", "1");
+		backlog.add(enc, NotifyBacklog.message(Message.REMOVE, "t/o"));
+		backlog.add(enc, object("t/o"));
+		attribute("t/o/a", "2");
+		while (!backlog.isEmpty()) {
+			send();
+			backlog.drain(enc);
+		}
+		send();
+		List<String> msgs = decode();
+		int n = msgs.size();
+		assertEquals("r t/o", msgs.get(n - 4));
+		assertEquals("o t/o", msgs.get(n - 3));
+		assertEquals("a t/o/a 0", msgs.get(n - 2));
+		assertEquals("a t/o/a 2", msgs.get(n - 1));
+		assertFalse(msgs.contains("a t/o/a 1"));
+	}
+}
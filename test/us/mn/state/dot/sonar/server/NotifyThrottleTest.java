@@ -0,0 +1,125 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import junit.framework.TestCase;
+import us.mn.state.dot.sched.Job;
+import us.mn.state.dot.sonar.Name;
+
+/**
+ * Notify throttle tests
+ */
+public class NotifyThrottleTest extends TestCase {
+
+	static private final int INTERVAL = 1000;
+
+	public NotifyThrottleTest(String name) {
+		super(name);
+	}
+
+	/** Jobs waiting on the "timer" */
+	private final ArrayList<Job> jobs = new ArrayList<Job>();
+
+	/** Current attribute values */
+	private final HashMap<String, String> values =
+		new HashMap<String, String>();
+
+	/** Values sent to clients */
+	private final ArrayList<String> sent = new ArrayList<String>();
+
+	private final NotifyThrottle throttle = new NotifyThrottle() {
+		protected void addJob(Job job) {
+			jobs.add(job);
+		}
+		protected void sendLatest(Name name) {
+			send(name);
+		}
+	};
+
+	/** Send the current value of an attribute */
+	private void send(Name name) {
+		String n = name.toString();
+		sent.add(n + "=" + values.get(n));
+	}
+
+	/** Change an attribute value, like TaskProcessor.notifyAttribute */
+	private void change(Name name, String v) {
+		values.put(name.toString(), v);
+		if (!throttle.defer(name, INTERVAL))
+			send(name);
+	}
+
+	/** Run all expired jobs */
+	private void expire() throws Exception {
+		ArrayList<Job> expired = new ArrayList<Job>(jobs);
+		jobs.clear();
+		for (Job j: expired)
+			j.perform();
+	}
+
+	public void testDefer() throws Exception {
+		Name name = new Name("t/o/a");
+		change(name, "1");
+		assertEquals(1, sent.size());
+		assertEquals("t/o/a=1", sent.get(0));
+		assertEquals(1, jobs.size());
+		change(name, "2");
+		change(name, "3");
+		assertEquals(1, sent.size());
+		assertEquals(1, jobs.size());
+		expire();
+		// Released once with the latest value
+		assertEquals(2, sent.size());
+		assertEquals("t/o/a=3", sent.get(1));
+		// Still throttled for another interval
+		assertEquals(1, jobs.size());
+		expire();
+		assertEquals(2, sent.size());
+		assertEquals(0, jobs.size());
+		// No longer throttled
+		change(name, "4");
+		assertEquals(3, sent.size());
+		assertEquals("t/o/a=4", sent.get(2));
+	}
+
+	public void testSeparateNames() throws Exception {
+		change(new Name("t/o/a"), "1");
+		change(new Name("t/o/b"), "2");
+		change(new Name("t/p/a"), "3");
+		assertEquals(3, sent.size());
+		assertEquals(3, jobs.size());
+	}
+
+	public void testRemove() throws Exception {
+		Name name = new Name("t/o/a");
+		Name other = new Name("t/o_2/a");
+		change(name, "1");
+		change(other, "1");
+		change(name, "2");
+		change(other, "2");
+		assertEquals(2, sent.size());
+		throttle.cancel(new Name("t/o"));
+		expire();
+		// Only the other object is released
+		assertEquals(3, sent.size());
+		assertEquals("t/o_2/a=2", sent.get(2));
+		// A new object with the same name is not throttled
+		change(name, "3");
+		assertEquals(4, sent.size());
+		assertEquals("t/o/a=3", sent.get(3));
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageDecoder;
+import us.mn.state.dot.sonar.MessageEncoder;
+import us.mn.state.dot.sonar.Name;
+import us.mn.state.dot.sonar.NamespaceError;
+import us.mn.state.dot.sonar.ProtocolError;
+import us.mn.state.dot.sonar.SonarException;
+import us.mn.state.dot.sonar.SonarObject;
+import us.mn.state.dot.sonar.TestObj;
+import us.mn.state.dot.sonar.TestObjImpl;
+import us.mn.state.dot.sonar.TestValues;
+import us.mn.state.dot.sonar.TestValuesImpl;
+
+/**
+ * Server namespace tests
+ */
+public class ServerNamespaceTest extends TestCase {
+
+	/** NULL REF string */
+	static private final String NULL_STR =
+		String.valueOf(Message.NULL_REF.code);
+
+	public ServerNamespaceTest(String name) {
+		super(name);
+	}
+
+	private ServerNamespace ns;
+	private UserImpl user;
+
+	private PrivilegeImpl createPriv(String n, CapabilityImpl c,
+		String typeN, boolean w) throws Exception
+	{
+		PrivilegeImpl p = new PrivilegeImpl(n, c);
+		p.setTypeN(typeN);
+		p.setWrite(w);
+		ns.addObject(p);
+		return p;
+	}
+
+	private void createNamespace() throws Exception {
+		ns = new ServerNamespace();
+		CapabilityImpl c = new CapabilityImpl("cap");
+		c.setEnabled(true);
+		ns.addObject(c);
+		createPriv("prv_r", c, "test", false);
+		createPriv("prv_w", c, "test", true);
+		RoleImpl r = new RoleImpl("role");
+		r.setCapabilities(new CapabilityImpl[] { c });
+		r.setEnabled(true);
+		ns.addObject(r);
+		user = new UserImpl("user");
+		user.setRole(r);
+		user.setEnabled(true);
+		ns.addObject(user);
+		ns.addObject(new TestObjImpl("obj", 1));
+	}
+
+	public void testPrivileges() throws Exception {
+		createNamespace();
+		Name t = new Name("test/obj/notes");
+		assertTrue(ns.canRead(t, user));
+		assertTrue(ns.canWrite(t, user));
+		assertFalse(ns.canRead(new Name("user"), user));
+		// Cached decisions must be invalidated on change
+		ns.setAttribute(new Name("privilege/prv_r/typeN"),
+			new String[] { "user" });
+		assertFalse(ns.canRead(t, user));
+		assertTrue(ns.canRead(new Name("user"), user));
+		assertTrue(ns.canWrite(t, user));
+		ns.setAttribute(new Name("capability/cap/enabled"),
+			new String[] { "false" });
+		assertFalse(ns.canWrite(t, user));
+		assertFalse(ns.canRead(new Name("user"), user));
+	}
+
+	public void testObjectPattern() throws Exception {
+		createNamespace();
+		CapabilityImpl c = new CapabilityImpl("cap_o");
+		c.setEnabled(true);
+		ns.addObject(c);
+		RoleImpl r = new RoleImpl("role_o");
+		r.setCapabilities(new CapabilityImpl[] { c });
+		r.setEnabled(true);
+		ns.addObject(r);
+		UserImpl u = new UserImpl("user_o");
+		u.setRole(r);
+		u.setEnabled(true);
+		ns.addObject(u);
+		Name t = new Name("test/obj_1/notes");
+		assertFalse(ns.canWrite(t, u));
+		PrivilegeImpl p = createPriv("prv_o", c, "test", true);
+		p.setObjN("obj_[0-9]");
+		ns.invalidatePrivileges();
+		assertTrue(ns.canWrite(t, u));
+		assertFalse(ns.canWrite(new Name("test/obj_x/notes"), u));
+		assertFalse(ns.canWrite(new Name("test/obj_12/notes"), u));
+		assertFalse(ns.canRead(t, u));
+	}
+
+	public void testCursor() throws Exception {
+		createNamespace();
+		for (int i = 0; i < 10; i++)
+			ns.addObject(new TestObjImpl("obj_" + i, i));
+		EnumerationCursor c = ns.createCursor(new Name("testobj"));
+		assertTrue(c.isPending("obj"));
+		assertFalse(c.isPending("obj_x"));
+		assertFalse(c.encode(new MessageEncoder(0), 1));
+		assertFalse(c.encode(new MessageEncoder(0), 1));
+		assertFalse(c.isPending("obj"));
+		assertTrue(c.isPending("obj_0"));
+		ns.removeObject(ns.lookupObject("testobj", "obj_5"));
+		assertFalse(c.isPending("obj_5"));
+		assertTrue(c.isPendingName("obj_5"));
+		assertTrue(c.encode(new MessageEncoder(0), 1 << 20));
+		assertFalse(c.isPendingName("obj_9"));
+	}
+
+	public void testAttributes() throws Exception {
+		createNamespace();
+		Name n = new Name("testobj/obj/notes");
+		assertEquals("some_notes", ns.getAttribute(n)[0]);
+		ns.setAttribute(n, new String[] { "x" });
+		assertEquals("x", ns.getAttribute(n)[0]);
+		assertEquals("1", ns.getAttribute(
+			new Name("testobj/obj/location"))[0]);
+		try {
+			ns.setAttribute(n, new String[] { "y", "z" });
+			fail();
+		}
+		catch (ProtocolError e) {
+			// expected
+		}
+		try {
+			ns.setAttribute(new Name("testobj/obj/location"),
+				new String[] { "2" });
+			fail();
+		}
+		catch (SonarException e) {
+			assertEquals("crazy exception", e.getMessage());
+		}
+		try {
+			ns.setAttribute(new Name("testobj/obj/location"),
+				new String[] { "x2" });
+			fail();
+		}
+		catch (ProtocolError e) {
+			// expected
+		}
+	}
+
+	public void testSetMissingObject() throws Exception {
+		createNamespace();
+		// Phantom objects are only created by client connections
+		try {
+			ns.setAttribute(new Name("testobj/none/notes"),
+				new String[] { "x" });
+			fail();
+		}
+		catch (NamespaceError e) {
+			// expected
+		}
+		assertNull(ns.lookupObject("testobj", "none"));
+	}
+
+	public void testValueCache() throws Exception {
+		ns = new ServerNamespace();
+		TypeNode t = ns.registerType(TestObj.SONAR_TYPE,
+			TestObjImpl.class);
+		t.setCaching(true);
+		TestObjImpl o = new TestObjImpl("obj", 1);
+		ns.addObject(o);
+		MessageEncoder enc = new MessageEncoder(0);
+		t.enumerateObject(enc, o);
+		long n = t.getCacheMisses();
+		assertTrue(n > 0);
+		assertEquals(1, t.getRecordMisses());
+		t.enumerateObject(new MessageEncoder(0), o);
+		assertEquals(1, t.getRecordHits());
+		assertEquals(n, t.getCacheMisses());
+		ns.setAttribute(new Name("testobj/obj/notes"),
+			new String[] { "x" });
+		t.enumerateObject(new MessageEncoder(0), o);
+		assertEquals(2, t.getRecordMisses());
+		assertEquals(n * 2, t.getCacheMisses());
+		o.setNotes("y");
+		ns.invalidateObject(new Name("testobj/obj/notes"));
+		enc = new MessageEncoder(0);
+		t.enumerateObject(enc, o);
+		assertEquals(3, t.getRecordMisses());
+		// Record must match an uncached enumeration
+		t.setCaching(false);
+		MessageEncoder unc = new MessageEncoder(0);
+		t.enumerateObject(unc, o);
+		assertTrue(Arrays.equals(unc.toByteArray(),
+			enc.toByteArray()));
+	}
+
+	/** Enumerate an object and decode the messages */
+	private List<String> enumerate(TypeNode t, SonarObject o, int pv)
+		throws Exception
+	{
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.setVersion(pv);
+		t.enumerateObject(enc, o);
+		byte[] b = enc.toByteArray();
+		ByteBuffer in = ByteBuffer.allocate(b.length);
+		MessageDecoder dec = new MessageDecoder(in);
+		dec.setVersion(pv);
+		in.put(b);
+		ArrayList<String> msgs = new ArrayList<String>();
+		for (List<String> p = dec.decode(); p != null;
+		     p = dec.decode())
+		{
+			ArrayList<String> m = new ArrayList<String>(p);
+			if (m.size() > 1)
+				m.set(1, dec.getName());
+			msgs.add(m.toString());
+		}
+		return msgs;
+	}
+
+	public void testEnumerateBinary() throws Exception {
+		ns = new ServerNamespace();
+		TypeNode t = ns.registerType(TestObj.SONAR_TYPE,
+			TestObjImpl.class);
+		TestObjImpl o = new TestObjImpl("obj", 7);
+		o.setNotes(null);
+		ns.addObject(o);
+		List<String> text = enumerate(t, o,
+			MessageEncoder.PROTOCOL_TEXT);
+		assertTrue(text.contains("[a, location, 7]"));
+		// Typed values decode to the same parameters as text
+		assertEquals(text, enumerate(t, o,
+			MessageEncoder.PROTOCOL_BINARY));
+	}
+
+	/** Set an attribute and check that it reads back the same */
+	private void assertRoundTrip(String a, String v) throws Exception {
+		Name n = new Name("testvalues/vals/" + a);
+		ns.setAttribute(n, new String[] { v });
+		assertEquals(v, ns.getAttribute(n)[0]);
+	}
+
+	public void testCodecRoundTrip() throws Exception {
+		createNamespace();
+		TestValuesImpl o = new TestValuesImpl("vals");
+		ns.addObject(o);
+		assertRoundTrip("small", "-5");
+		assertRoundTrip("small", "32767");
+		assertEquals(32767, o.getSmall());
+		assertRoundTrip("big", "9876543210");
+		assertEquals(9876543210L, o.getBig());
+		assertRoundTrip("big", "-1");
+		assertRoundTrip("ratio", "1.5");
+		assertRoundTrip("ratio", "-0.25");
+		assertEquals(-0.25f, o.getRatio());
+		assertRoundTrip("scale", "0.30000000000000004");
+		assertEquals(0.1 + 0.2, o.getScale());
+		assertRoundTrip("active", "true");
+		assertTrue(o.getActive());
+		assertRoundTrip("active", "false");
+		assertFalse(o.getActive());
+		assertRoundTrip("label", "a label");
+		assertEquals("a label", o.getLabel());
+		assertRoundTrip("label", NULL_STR);
+		assertNull(o.getLabel());
+		assertRoundTrip("peer", "obj");
+		assertSame(ns.lookupObject("testobj", "obj"), o.getPeer());
+		assertRoundTrip("peer", NULL_STR);
+		assertNull(o.getPeer());
+	}
+
+	public void testCodecInvalid() throws Exception {
+		createNamespace();
+		TestValuesImpl o = new TestValuesImpl("vals");
+		ns.addObject(o);
+		String[][] bad = {
+			{ "small", "40000" },
+			{ "big", "1.5" },
+			{ "ratio", "x" },
+			{ "scale", "" },
+		};
+		for (String[] b: bad) {
+			try {
+				ns.setAttribute(new Name("testvalues/vals/" +
+					b[0]), new String[] { b[1] });
+				fail(b[0]);
+			}
+			catch (ProtocolError e) {
+				// expected
+			}
+		}
+	}
+
+	public void testCodecNullRef() throws Exception {
+		createNamespace();
+		TestValuesImpl o = new TestValuesImpl("vals");
+		o.setActive(true);
+		ns.addObject(o);
+		// A null reference is not a value for a primitive setter
+		String[] prims = {
+			"testvalues/vals/small",
+			"testvalues/vals/big",
+			"testvalues/vals/ratio",
+			"testvalues/vals/scale",
+			"testvalues/vals/active",
+			"testobj/obj/location",
+		};
+		for (String p: prims) {
+			try {
+				ns.setAttribute(new Name(p),
+					new String[] { NULL_STR });
+				fail(p);
+			}
+			catch (ProtocolError e) {
+				// expected
+			}
+		}
+		assertTrue(o.getActive());
+		assertEquals("true", ns.getAttribute(
+			new Name("testvalues/vals/active"))[0]);
+	}
+
+	public void testEnumerateValues() throws Exception {
+		ns = new ServerNamespace();
+		ns.addObject(new TestObjImpl("obj", 1));
+		TypeNode t = ns.registerType(TestValues.SONAR_TYPE,
+			TestValuesImpl.class);
+		TestValuesImpl o = new TestValuesImpl("vals");
+		o.setSmall((short) -5);
+		o.setBig(9876543210L);
+		o.setRatio(1.5f);
+		o.setScale(0.1 + 0.2);
+		o.setActive(true);
+		o.setPeer((TestObj) ns.lookupObject("testobj", "obj"));
+		ns.addObject(o);
+		List<String> text = enumerate(t, o,
+			MessageEncoder.PROTOCOL_TEXT);
+		assertTrue(text.contains("[a, scale, 0.30000000000000004]"));
+		assertTrue(text.contains("[a, label, " + NULL_STR + "]"));
+		assertTrue(text.contains("[a, peer, obj]"));
+		// Typed values decode to the same parameters as text
+		assertEquals(text, enumerate(t, o,
+			MessageEncoder.PROTOCOL_BINARY));
+	}
+}
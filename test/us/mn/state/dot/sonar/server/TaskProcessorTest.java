@@ -0,0 +1,54 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import junit.framework.TestCase;
+import us.mn.state.dot.sonar.Name;
+import us.mn.state.dot.sonar.TestObjImpl;
+
+/**
+ * Task processor worker routing tests
+ */
+public class TaskProcessorTest extends TestCase {
+
+	public TaskProcessorTest(String name) {
+		super(name);
+	}
+
+	public void testWorkerIndex() {
+		for (int n = 1; n <= 16; n++) {
+			for (int h: new int[] { 0, 1, -1, Integer.MIN_VALUE,
+				Integer.MAX_VALUE })
+			{
+				int i = TaskProcessor.workerIndex(h, n);
+				assertTrue(i >= 0 && i < n);
+			}
+		}
+	}
+
+	public void testObjectRouting() {
+		for (int i = 0; i < 100; i++) {
+			TestObjImpl o = new TestObjImpl("obj_" + i);
+			for (int n = 1; n <= 8; n++) {
+				int w = TaskProcessor.workerIndex(o, n);
+				// Client attribute writes are notified by name
+				assertEquals(w, TaskProcessor.workerIndex(
+					new Name(o, "notes"), n));
+				assertEquals(w, TaskProcessor.workerIndex(
+					new Name(o), n));
+			}
+		}
+	}
+}
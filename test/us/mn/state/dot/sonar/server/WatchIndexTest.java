@@ -0,0 +1,104 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.server;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import junit.framework.TestCase;
+import us.mn.state.dot.sonar.Name;
+
+/**
+ * Watch index tests
+ */
+public class WatchIndexTest extends TestCase {
+
+	public WatchIndexTest(String name) {
+		super(name);
+	}
+
+	private final WatchIndex<String> idx =
+		new WatchIndex<String>(new String[0]);
+	private final HashSet<String> w_a = new HashSet<String>();
+	private final HashSet<String> w_b = new HashSet<String>();
+
+	private List<String> lookup(String n) {
+		String[] cs = idx.lookup(new Name(n));
+		Arrays.sort(cs);
+		return Arrays.asList(cs);
+	}
+
+	public void testTypeWatch() {
+		idx.startWatching(w_a, new Name("test"), "a");
+		assertEquals(Arrays.asList("a"), lookup("test/obj"));
+		assertEquals(Arrays.asList("a"), lookup("test/obj/notes"));
+		assertEquals(Arrays.asList(), lookup("other/obj/notes"));
+	}
+
+	public void testObjectWatch() {
+		idx.startWatching(w_a, new Name("test/obj"), "a");
+		idx.startWatching(w_b, new Name("test"), "b");
+		assertEquals(Arrays.asList("a", "b"), lookup("test/obj/notes"));
+		assertEquals(Arrays.asList("b"), lookup("test/obj_2/notes"));
+		// Attribute names are not watch positive
+		idx.startWatching(w_a, new Name("test/obj_2/notes"), "a");
+		assertEquals(Arrays.asList("b"), lookup("test/obj_2/notes"));
+	}
+
+	public void testIgnoredAttribute() {
+		idx.startWatching(w_a, new Name("test"), "a");
+		idx.startWatching(w_b, new Name("test"), "b");
+		idx.stopWatching(w_a, new Name("test//notes"), "a");
+		assertEquals(Arrays.asList("b"), lookup("test/obj/notes"));
+		assertEquals(Arrays.asList("a", "b"),
+			lookup("test/obj/location"));
+		assertEquals(Arrays.asList("a", "b"), lookup("test/obj"));
+		// Object watch has priority over ignored attribute
+		idx.startWatching(w_a, new Name("test/obj"), "a");
+		assertEquals(Arrays.asList("a", "b"), lookup("test/obj/notes"));
+		assertEquals(Arrays.asList("b"), lookup("test/obj_2/notes"));
+		// Watching the attribute again removes the negative entry
+		idx.startWatching(w_a, new Name("test//notes"), "a");
+		assertEquals(Arrays.asList("a", "b"),
+			lookup("test/obj_2/notes"));
+	}
+
+	public void testStopWatching() {
+		idx.startWatching(w_a, new Name("test"), "a");
+		idx.startWatching(w_a, new Name("test/obj"), "a");
+		idx.startWatching(w_b, new Name("test"), "b");
+		idx.stopWatching(w_a, new Name("test/obj"), "a");
+		assertFalse(w_a.contains("test/obj"));
+		assertEquals(Arrays.asList("a", "b"), lookup("test/obj"));
+		idx.stopWatching(w_a, new Name("test"), "a");
+		assertTrue(w_a.isEmpty());
+		assertEquals(Arrays.asList("b"), lookup("test/obj"));
+		idx.stopWatching(w_b, new Name("test"), "b");
+		assertEquals(Arrays.asList(), lookup("test/obj"));
+	}
+
+	public void testClearWatching() {
+		idx.startWatching(w_a, new Name("test"), "a");
+		idx.startWatching(w_a, new Name("test/obj"), "a");
+		idx.stopWatching(w_a, new Name("test//notes"), "a");
+		idx.startWatching(w_b, new Name("test"), "b");
+		idx.clearWatching(w_a, "a");
+		assertTrue(w_a.isEmpty());
+		assertEquals(Arrays.asList("b"), lookup("test/obj"));
+		assertEquals(Arrays.asList("b"), lookup("test/obj/notes"));
+		idx.clearWatching(w_b, "b");
+		assertEquals(Arrays.asList(), lookup("test/obj/notes"));
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import us.mn.state.dot.sonar.TestObjImpl;
+import us.mn.state.dot.sonar.server.AttributeDispatcher;
+import us.mn.state.dot.sonar.server.ServerNamespace;
+
+/**
+ * Benchmark for attribute accessors, compared with plain reflection.
+ */
+public class AccessorBench {
+
+	/** Number of calls for each run */
+	static private final int CALLS = 2000000;
+
+	/** Values to set */
+	static private final String[][] VALUES = {
+		new String[] { "a" }, new String[] { "b" }
+	};
+
+	/** Sink to prevent dead code elimination */
+	static private int sink;
+
+	/** Run reflective calls (as the dispatcher did previously) */
+	static private long runReflect(ServerNamespace ns, TestObjImpl o)
+		throws Exception
+	{
+		HashMap<String, Method> getters = new HashMap<String, Method>();
+		HashMap<String, Method> setters = new HashMap<String, Method>();
+		getters.put("notes", TestObjImpl.class.getMethod("getNotes"));
+		setters.put("notes", TestObjImpl.class.getMethod("setNotes",
+			String.class));
+		long st = System.nanoTime();
+		for (int i = 0; i < CALLS; i++) {
+			Method set = setters.get("notes");
+			set.invoke(o, ns.unmarshall(set.getParameterTypes(),
+				VALUES[i & 1]));
+			Method get = getters.get("notes");
+			Object r = get.invoke(o, new Object[0]);
+			String[] v = new String[] { ns.marshall(r) };
+			sink += v[0].length();
+		}
+		return System.nanoTime() - st;
+	}
+
+	/** Run attribute dispatcher calls */
+	static private long runDispatch(AttributeDispatcher d, TestObjImpl o)
+		throws Exception
+	{
+		long st = System.nanoTime();
+		for (int i = 0; i < CALLS; i++) {
+			d.setValue(o, "notes", VALUES[i & 1]);
+			sink += d.getValue(o, "notes")[0].length();
+		}
+		return System.nanoTime() - st;
+	}
+
+	/** Run int attribute getter calls */
+	static private long runGetInt(AttributeDispatcher d, TestObjImpl o)
+		throws Exception
+	{
+		long st = System.nanoTime();
+		for (int i = 0; i < CALLS; i++)
+			sink += d.getValue(o, "location")[0].length();
+		return System.nanoTime() - st;
+	}
+
+	/** Run the benchmark */
+	static public void main(String[] args) {
+		try {
+			ServerNamespace ns = new ServerNamespace();
+			AttributeDispatcher d = new AttributeDispatcher(
+				TestObjImpl.class, ns);
+			TestObjImpl o = new TestObjImpl("obj", 1);
+			for (int r = 0; r < 5; r++) {
+				long rf = runReflect(ns, o);
+				long ds = runDispatch(d, o);
+				long gi = runGetInt(d, o);
+				System.out.println("run " + r + ": reflect " +
+					(rf / CALLS) + " ns/call, dispatch " +
+					(ds / CALLS) + " ns/call, get int " +
+					(gi / CALLS) + " ns/call");
+			}
+			System.out.println("sink " + sink);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageDecoder;
+import us.mn.state.dot.sonar.MessageEncoder;
+
+/**
+ * Benchmark for decoding bursts of messages.  The protocol version can be
+ * given as the first argument.
+ */
+public class DecoderBench {
+
+	/** Number of messages in one burst */
+	static private final int BURST = 10000;
+
+	/** Number of bursts to decode for each run */
+	static private final int BURSTS = 50;
+
+	/** Size of application input buffer */
+	static private final int BUF_SIZE = 16 * 1024;
+
+	/** Create a burst of attribute messages */
+	static private byte[] createBurst(int pv) throws Exception {
+		MessageEncoder enc = new MessageEncoder(0);
+		enc.setVersion(pv);
+		for (int i = 0; i < BURST; i++) {
+			enc.beginMessage(Message.ATTRIBUTE,
+				"detector/D" + i + "/volume");
+			enc.putParam(i * 7);
+			enc.endMessage();
+		}
+		return enc.toByteArray();
+	}
+
+	/** Decode one burst, feeding the buffer in chunks */
+	static private int decodeBurst(byte[] burst, ByteBuffer app_in,
+		MessageDecoder dec) throws Exception
+	{
+		int n = 0;
+		int off = 0;
+		while (off < burst.length) {
+			int len = Math.min(app_in.remaining(),
+				burst.length - off);
+			app_in.put(burst, off, len);
+			off += len;
+			List<String> p = dec.decode();
+			while (p != null) {
+				n++;
+				p = dec.decode();
+			}
+		}
+		return n;
+	}
+
+	/** Run the benchmark */
+	static public void main(String[] args) {
+		try {
+			int pv = (args.length > 0)
+			       ? Integer.parseInt(args[0])
+			       : MessageEncoder.PROTOCOL_TEXT;
+			byte[] burst = createBurst(pv);
+			System.out.println("protocol " + pv + ": " +
+				burst.length + " bytes per burst");
+			ByteBuffer app_in = ByteBuffer.allocate(BUF_SIZE);
+			MessageDecoder dec = new MessageDecoder(app_in);
+			dec.setVersion(pv);
+			for (int r = 0; r < 5; r++) {
+				long st = System.nanoTime();
+				int n = 0;
+				for (int b = 0; b < BURSTS; b++)
+					n += decodeBurst(burst, app_in, dec);
+				long ns = System.nanoTime() - st;
+				System.out.println("run " + r + ": " + n +
+					" messages, " + (n * 1000000000L / ns) +
+					" msg/s, " + (burst.length * BURSTS *
+					1000L / ns) + " MB/s");
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.test;
+
+import java.nio.ByteBuffer;
+import us.mn.state.dot.sonar.Message;
+import us.mn.state.dot.sonar.MessageEncoder;
+
+/**
+ * Benchmark for encoding bursts of attribute messages, with values passed
+ * as strings or with their exact types.  The protocol version can be given
+ * as the first argument.
+ */
+public class EncoderBench {
+
+	/** Number of messages in one burst */
+	static private final int BURST = 10000;
+
+	/** Number of bursts to encode for each run */
+	static private final int BURSTS = 50;
+
+	/** Attribute names */
+	static private final String[] NAMES = new String[BURST];
+	static {
+		for (int i = 0; i < BURST; i++)
+			NAMES[i] = "detector/D" + i + "/volume";
+	}
+
+	/** Drain all encoded data, as if it were written */
+	static private int drain(MessageEncoder enc) {
+		ByteBuffer buf = enc.getBuffer();
+		buf.flip();
+		int n = buf.remaining();
+		buf.position(buf.limit());
+		enc.compact();
+		return n;
+	}
+
+	/** Encode one burst with values formatted as strings, as the
+	 * attribute codecs do for the text protocol */
+	static private int encodeStrings(MessageEncoder enc) throws Exception {
+		for (int i = 0; i < BURST; i++) {
+			String v;
+			switch (i % 3) {
+			case 0:
+				v = Integer.toString(i * 7);
+				break;
+			case 1:
+				v = Float.toString(i * 0.25f);
+				break;
+			default:
+				v = Double.toString(i / 3.0);
+				break;
+			}
+			enc.encode(Message.ATTRIBUTE, NAMES[i],
+				new String[] { v });
+		}
+		return drain(enc);
+	}
+
+	/** Encode one burst with typed values */
+	static private int encodeTyped(MessageEncoder enc) {
+		for (int i = 0; i < BURST; i++) {
+			enc.beginMessage(Message.ATTRIBUTE, NAMES[i]);
+			switch (i % 3) {
+			case 0:
+				enc.putParam(i * 7);
+				break;
+			case 1:
+				enc.putParam(i * 0.25f);
+				break;
+			default:
+				enc.putParam(i / 3.0);
+				break;
+			}
+			enc.endMessage();
+		}
+		return drain(enc);
+	}
+
+	/** Run the benchmark */
+	static public void main(String[] args) {
+		try {
+			int pv = (args.length > 0)
+			       ? Integer.parseInt(args[0])
+			       : MessageEncoder.PROTOCOL_TEXT;
+			MessageEncoder enc = new MessageEncoder(0);
+			enc.setVersion(pv);
+			System.out.println("protocol " + pv + ": " +
+				encodeStrings(enc) + " bytes per burst, " +
+				encodeTyped(enc) + " typed");
+			for (int r = 0; r < 5; r++) {
+				long st = System.nanoTime();
+				for (int b = 0; b < BURSTS; b++)
+					encodeStrings(enc);
+				long ss = System.nanoTime() - st;
+				st = System.nanoTime();
+				for (int b = 0; b < BURSTS; b++)
+					encodeTyped(enc);
+				long ts = System.nanoTime() - st;
+				long n = (long) BURST * BURSTS;
+				System.out.println("run " + r + ": strings " +
+					(n * 1000000000L / ss) + " msg/s, " +
+					"typed " + (n * 1000000000L / ts) +
+					" msg/s");
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * SONAR -- Simple Object Notification And Replication
+ * Copyright (C) 2026  Minnesota Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.sonar.test;
+
+import us.mn.state.dot.sonar.Name;
+import us.mn.state.dot.sonar.TestObjImpl;
+
+/**
+ * Benchmark for names on notify paths, compared with splitting a new path
+ * for every name.
+ */
+public class NameBench {
+
+	/** Number of names for each run */
+	static private final int CALLS = 2000000;
+
+	/** Attribute names */
+	static private final String[] ATTRS = {
+		"notes", "location", "enabled", "status"
+	};
+
+	/** Sink to prevent dead code elimination */
+	static private int sink;
+
+	/** Run names created by splitting (as Name did previously) */
+	static private long runSplit(TestObjImpl[] objs) {
+		long st = System.nanoTime();
+		for (int i = 0; i < CALLS; i++) {
+			TestObjImpl o = objs[i % objs.length];
+			String a = ATTRS[i & 3];
+			String n = o.getTypeName() + "/" + o.getName() + "/" + a;
+			String[] parts = n.split("/");
+			String on = parts[0] + "/" + parts[1];
+			String an = parts[0] + "//" + parts[2];
+			sink += on.length() + an.length() + n.length();
+		}
+		return System.nanoTime() - st;
+	}
+
+	/** Run cached names */
+	static private long runCreate(TestObjImpl[] objs) {
+		long st = System.nanoTime();
+		for (int i = 0; i < CALLS; i++) {
+			TestObjImpl o = objs[i % objs.length];
+			Name name = Name.create(o, ATTRS[i & 3]);
+			sink += name.getObjectName().length() +
+				name.getAttributeName().length() +
+				name.toString().length();
+		}
+		return System.nanoTime() - st;
+	}
+
+	/** Run the benchmark */
+	static public void main(String[] args) {
+		int n_objs = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		TestObjImpl[] objs = new TestObjImpl[n_objs];
+		for (int i = 0; i < n_objs; i++)
+			objs[i] = new TestObjImpl("obj_" + i, i);
+		for (int r = 0; r < 5; r++) {
+			long sp = runSplit(objs);
+			long cr = runCreate(objs);
+			System.out.println("run " + r + ": split " +
+				(sp / CALLS) + " ns/name, cached " +
+				(cr / CALLS) + " ns/name");
+		}
+		System.out.println("sink " + sink);
+	}
+}